@@ -0,0 +1,90 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.apphosting.api.ApiProxy;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal App Engine environment for threads outside of a request, which datastore keys need to
+ * know the app they belong to.
+ */
+final class BenchmarkEnvironment implements ApiProxy.Environment {
+
+  private static final String APP_ID = "benchmarks";
+
+  private final Map<String, Object> attributes = new HashMap<>();
+
+  private BenchmarkEnvironment() {}
+
+  /** Gives every thread without an environment a benchmark environment. Safe to call repeatedly. */
+  static synchronized void install() {
+    if (ApiProxy.getEnvironmentFactory() == null) {
+      ApiProxy.setEnvironmentFactory(BenchmarkEnvironment::new);
+    }
+  }
+
+  @Override
+  public String getAppId() {
+    return APP_ID;
+  }
+
+  @Override
+  public String getModuleId() {
+    return "default";
+  }
+
+  @Override
+  public String getVersionId() {
+    return "1";
+  }
+
+  @Override
+  public String getEmail() {
+    return null;
+  }
+
+  @Override
+  public boolean isLoggedIn() {
+    return false;
+  }
+
+  @Override
+  public boolean isAdmin() {
+    return false;
+  }
+
+  @Override
+  public String getAuthDomain() {
+    return null;
+  }
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public String getRequestNamespace() {
+    return "";
+  }
+
+  @Override
+  public Map<String, Object> getAttributes() {
+    return attributes;
+  }
+
+  @Override
+  public long getRemainingMillis() {
+    return Long.MAX_VALUE;
+  }
+}
@@ -0,0 +1,88 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import com.google.sps.data.Comment;
+import com.google.sps.data.CommentRepository;
+import com.google.sps.data.CommentRepository.Order;
+import com.google.sps.data.InMemoryCommentRepository;
+import com.google.sps.data.JsonSupport;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writes a page of comments as the comment feed does: read from the repository and streamed into a
+ * JSON writer with the shared Gson, at various page sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommentSerializationBenchmark {
+
+  @Param({"10", "100", "1000", "10000"})
+  private int pageSize;
+
+  private CommentRepository comments;
+  private Gson gson;
+
+  @Setup
+  public void setUp() {
+    comments = new InMemoryCommentRepository();
+    List<Comment> page = new ArrayList<>();
+    for (int i = 0; i < pageSize; i++) {
+      page.add(Fixtures.comment(i));
+    }
+    comments.addAll(page);
+    gson = JsonSupport.createGson();
+  }
+
+  @Benchmark
+  public byte[] writePage() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    JsonWriter writer =
+        new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    writer.setSerializeNulls(false);
+    writer.beginObject();
+    writer.name("comments").beginArray();
+    comments.list(
+        Order.NEWEST_FIRST, null, pageSize, comment -> gson.toJson(comment, Comment.class, writer));
+    writer.endArray();
+    writer.endObject();
+    writer.close();
+    return out.toByteArray();
+  }
+}
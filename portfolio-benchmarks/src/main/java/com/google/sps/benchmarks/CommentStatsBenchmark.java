@@ -0,0 +1,65 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.sps.data.CommentStats;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Aggregates the comment stats over N comment entities, as the daily stats rebuild does. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommentStatsBenchmark {
+
+  @Param({"1000", "10000", "100000"})
+  private int commentCount;
+
+  private List<Entity> entities;
+
+  @Setup
+  public void setUp() {
+    BenchmarkEnvironment.install();
+    entities = new ArrayList<>();
+    for (int i = 0; i < commentCount; i++) {
+      entities.add(Fixtures.commentEntity(i));
+    }
+  }
+
+  @Benchmark
+  public CommentStats aggregate() {
+    CommentStats stats = CommentStats.empty();
+    for (Entity entity : entities) {
+      stats.add(entity);
+    }
+    return stats;
+  }
+}
@@ -0,0 +1,52 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.appengine.api.datastore.Entity;
+import com.google.sps.data.Comment;
+import com.google.sps.data.CommentEntity;
+import com.google.sps.data.Constants;
+
+/** Test data shared by the benchmarks. */
+final class Fixtures {
+
+  private static final String[] MOODS = {"😀", "🤔", "🤠", "☹️", "👽"};
+  private static final long START_TIME = 1593561600000L;
+
+  private Fixtures() {}
+
+  /** Returns the i-th of a series of comments, one minute apart, every third one anonymous. */
+  static Comment comment(int i) {
+    return new Comment(
+        0,
+        "Comment number " + i + ", which is about as long as a typical comment on the page.",
+        "user" + (i % 100) + "@example.com",
+        i % 3 == 0 ? Constants.DEFAULT_USERNAME : "User " + (i % 100),
+        START_TIME + i * 60_000L,
+        MOODS[i % MOODS.length]);
+  }
+
+  /** Returns the i-th comment as a comment entity. */
+  static Entity commentEntity(int i) {
+    Comment comment = comment(i);
+    Entity entity = new Entity(CommentEntity.KIND.getLabel(), i + 1);
+    entity.setProperty(CommentEntity.CONTENT_PROPERTY.getLabel(), comment.getContent());
+    entity.setProperty(CommentEntity.EMAIL_PROPERTY.getLabel(), comment.getEmail());
+    entity.setProperty(CommentEntity.USERNAME_PROPERTY.getLabel(), comment.getUsername());
+    entity.setProperty(CommentEntity.TIME_PROPERTY.getLabel(), comment.getTime());
+    entity.setProperty(CommentEntity.MOOD_PROPERTY.getLabel(), comment.getMood());
+    return entity;
+  }
+}
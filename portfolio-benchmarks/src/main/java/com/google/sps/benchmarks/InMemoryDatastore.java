@@ -0,0 +1,81 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-memory stand-in for the datastore that answers batch gets and puts from a map, which is all
+ * the page view reads need. Every other call fails.
+ */
+final class InMemoryDatastore {
+
+  private InMemoryDatastore() {}
+
+  static DatastoreService create(Map<Key, Entity> entities) {
+    return (DatastoreService)
+        Proxy.newProxyInstance(
+            DatastoreService.class.getClassLoader(),
+            new Class<?>[] {DatastoreService.class},
+            (proxy, method, args) -> {
+              if (isBatchGet(method, args)) {
+                return getAll(entities, (Iterable<?>) args[0]);
+              }
+              if (method.getName().equals("put") && args.length == 1 && args[0] instanceof Entity) {
+                Entity entity = (Entity) args[0];
+                entities.put(entity.getKey(), entity);
+                return entity.getKey();
+              }
+              throw new UnsupportedOperationException(method.toString());
+            });
+  }
+
+  /** Returns an asynchronous client whose batch gets complete immediately. */
+  static AsyncDatastoreService createAsync(Map<Key, Entity> entities) {
+    return (AsyncDatastoreService)
+        Proxy.newProxyInstance(
+            AsyncDatastoreService.class.getClassLoader(),
+            new Class<?>[] {AsyncDatastoreService.class},
+            (proxy, method, args) -> {
+              if (isBatchGet(method, args)) {
+                return CompletableFuture.completedFuture(getAll(entities, (Iterable<?>) args[0]));
+              }
+              throw new UnsupportedOperationException(method.toString());
+            });
+  }
+
+  private static boolean isBatchGet(Method method, Object[] args) {
+    return method.getName().equals("get") && args.length == 1 && args[0] instanceof Iterable;
+  }
+
+  private static Map<Key, Entity> getAll(Map<Key, Entity> entities, Iterable<?> keys) {
+    Map<Key, Entity> found = new LinkedHashMap<>();
+    for (Object key : keys) {
+      Entity entity = entities.get(key);
+      if (entity != null) {
+        found.put((Key) key, entity);
+      }
+    }
+    return found;
+  }
+}
@@ -0,0 +1,70 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.sps.data.CountBuffer;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Counts page views from many threads at once, as concurrent page loads do, with the buffer
+ * flushing into an in-memory map whenever a flush is due.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class PageViewIncrementBenchmark {
+
+  /* Same settings as AddPageViewServlet. */
+  private static final long FLUSH_INTERVAL_MILLIS = 30 * 1000;
+  private static final long FLUSH_THRESHOLD = 500;
+
+  private final Map<LocalDate, Long> storage = new ConcurrentHashMap<>();
+  private CountBuffer<LocalDate> views;
+  private CountBuffer.Sink<LocalDate> sink;
+  private LocalDate today;
+
+  @Setup
+  public void setUp() {
+    views = new CountBuffer<>(FLUSH_INTERVAL_MILLIS, FLUSH_THRESHOLD);
+    sink = (day, delta) -> storage.merge(day, delta, Long::sum);
+    today = LocalDate.now();
+  }
+
+  @Benchmark
+  public void increment() {
+    views.increment(today);
+    if (views.isFlushDue()) {
+      views.tryFlush(sink);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.benchmarks;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.gson.Gson;
+import com.google.sps.data.JsonSupport;
+import com.google.sps.data.ViewCounter;
+import com.google.sps.data.ViewsEntity;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Assembles the 7-day page view chart data as the page view stats servlet does: sums every day's
+ * shards, labels the days and writes the JSON, reading the shards from an in-memory datastore.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageViewStatsBenchmark {
+
+  private static final int DAYS = 7;
+
+  private AsyncDatastoreService datastore;
+  private Gson gson;
+  private LocalDate today;
+
+  @Setup
+  public void setUp() {
+    BenchmarkEnvironment.install();
+    today = LocalDate.now();
+    Map<Key, Entity> entities = new HashMap<>();
+    for (int day = 0; day < DAYS; day++) {
+      LocalDate date = today.minusDays(day);
+      for (int shard = 0; shard < ViewCounter.getShardCount(); shard++) {
+        Key key = KeyFactory.createKey(ViewsEntity.KIND.getLabel(), date + "#" + shard);
+        Entity entity = new Entity(key);
+        entity.setProperty(ViewsEntity.COUNT_PROPERTY.getLabel(), (long) (day * 100 + shard));
+        entities.put(key, entity);
+      }
+    }
+    datastore = InMemoryDatastore.createAsync(entities);
+    gson = JsonSupport.createGson();
+  }
+
+  @Benchmark
+  public String assembleWeek() {
+    Map<LocalDate, Long> counts =
+        ViewCounter.getCounts(datastore, today.minusDays(DAYS - 1), today).getCounts();
+    DateTimeFormatter formatter = DateTimeFormatter.ofLocalizedDate(FormatStyle.SHORT);
+    LinkedHashMap<String, Long> views = new LinkedHashMap<>();
+    for (Map.Entry<LocalDate, Long> count : counts.entrySet()) {
+      views.put(formatter.format(count.getKey()), count.getValue());
+    }
+    StringWriter out = new StringWriter();
+    gson.toJson(views, JsonSupport.COUNTS_TYPE, out);
+    return out.toString();
+  }
+}
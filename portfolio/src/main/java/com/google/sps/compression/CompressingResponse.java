@@ -0,0 +1,338 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Response wrapper that compresses the body with a negotiated content coding. The body is held back
+ * until it reaches a threshold size; smaller bodies are sent as they are with their length, since
+ * compressing them saves little and costs a deflater. Larger bodies are compressed as they are
+ * written, so they are never collected in full. Only bodies of the given content types are
+ * compressed, and only if the servlet did not set a content coding itself.
+ *
+ * <p>{@link #finish()} has to be called once the servlet is done with the response, or {@link
+ * #discard()} if the servlet failed.
+ */
+public final class CompressingResponse extends HttpServletResponseWrapper {
+
+  /* Header of a gzip member without a file name or time, as written by GZIPOutputStream. */
+  private static final byte[] GZIP_HEADER = {
+    0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+  };
+  private static final int BUFFER_SIZE = 8192;
+
+  private final ContentEncoding encoding;
+  private final int threshold;
+  private final Set<String> contentTypes;
+
+  private CompressingStream stream;
+  private PrintWriter writer;
+
+  public CompressingResponse(
+      HttpServletResponse response,
+      ContentEncoding encoding,
+      int threshold,
+      Set<String> contentTypes) {
+    super(response);
+    this.encoding = encoding;
+    this.threshold = threshold;
+    this.contentTypes = contentTypes;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() throws IOException {
+    if (writer != null) {
+      throw new IllegalStateException("getWriter() has already been called");
+    }
+    return getStream();
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    if (writer == null) {
+      if (stream != null) {
+        throw new IllegalStateException("getOutputStream() has already been called");
+      }
+      writer = new PrintWriter(new OutputStreamWriter(getStream(), getCharacterEncoding()));
+    }
+    return writer;
+  }
+
+  private CompressingStream getStream() {
+    if (stream == null) {
+      stream = new CompressingStream();
+    }
+    return stream;
+  }
+
+  /* The length of the body is only known once it is decided whether to compress it. */
+
+  @Override
+  public void setContentLength(int length) {}
+
+  @Override
+  public void setContentLengthLong(long length) {}
+
+  @Override
+  public void setHeader(String name, String value) {
+    if (!"Content-Length".equalsIgnoreCase(name)) {
+      super.setHeader(name, value);
+    }
+  }
+
+  @Override
+  public void addHeader(String name, String value) {
+    if (!"Content-Length".equalsIgnoreCase(name)) {
+      super.addHeader(name, value);
+    }
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    if (writer != null) {
+      writer.flush();
+    } else if (stream != null) {
+      stream.flush();
+    }
+    if (stream == null || stream.out != null) {
+      super.flushBuffer();
+    }
+  }
+
+  @Override
+  public void resetBuffer() {
+    super.resetBuffer();
+    if (stream != null) {
+      stream.resetBuffer();
+    }
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    if (stream != null) {
+      stream.resetBuffer();
+    }
+  }
+
+  @Override
+  public void sendError(int status, String message) throws IOException {
+    discardBody();
+    super.sendError(status, message);
+  }
+
+  @Override
+  public void sendError(int status) throws IOException {
+    discardBody();
+    super.sendError(status);
+  }
+
+  @Override
+  public void sendRedirect(String location) throws IOException {
+    discardBody();
+    super.sendRedirect(location);
+  }
+
+  /* Once the body is no longer held back the response is committed and cannot be replaced. */
+  private void discardBody() {
+    if (stream != null && stream.out == null) {
+      stream.resetBuffer();
+      stream.finished = true;
+    }
+  }
+
+  /**
+   * Writes whatever is still held back, completes the compressed body and returns the deflater to
+   * its pool. Calling it again has no effect.
+   */
+  public void finish() throws IOException {
+    if (writer != null) {
+      writer.close();
+    } else if (stream != null) {
+      stream.close();
+    }
+  }
+
+  /**
+   * Drops whatever is still held back and returns the deflater to its pool without completing the
+   * body, for responses whose servlet failed. Has no effect after {@link #finish()}.
+   */
+  public void discard() {
+    if (stream != null) {
+      stream.discard();
+    }
+  }
+
+  /**
+   * Holds back the body until it is known whether it will be compressed. Until then {@code out} is
+   * null and everything goes to {@code buffer}.
+   */
+  private final class CompressingStream extends ServletOutputStream {
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(threshold);
+    private final CRC32 crc = new CRC32();
+    private OutputStream out;
+    private Deflater deflater;
+    private boolean finished;
+
+    @Override
+    public void write(int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      if (finished) {
+        throw new IOException("Response body has already been completed");
+      }
+      if (out == null) {
+        if (buffer.size() + len <= threshold) {
+          buffer.write(b, off, len);
+          return;
+        }
+        start();
+      }
+      if (deflater != null) {
+        crc.update(b, off, len);
+      }
+      out.write(b, off, len);
+    }
+
+    /** Decides how the body is sent once it is larger than the threshold. */
+    private void start() throws IOException {
+      HttpServletResponse response = (HttpServletResponse) getResponse();
+      ServletOutputStream raw = response.getOutputStream();
+      if (isCompressible(response)) {
+        response.setHeader("Content-Encoding", encoding.getLabel());
+        deflater = encoding.getDeflaters().acquire();
+        if (encoding.isGzipFormat()) {
+          raw.write(GZIP_HEADER);
+        }
+        // Flushing completes the current deflate block, so whatever was written can be decoded.
+        out = new DeflaterOutputStream(raw, deflater, BUFFER_SIZE, true);
+      } else {
+        out = raw;
+      }
+      if (deflater != null) {
+        crc.update(buffer.toByteArray());
+      }
+      buffer.writeTo(out);
+      buffer.reset();
+    }
+
+    private boolean isCompressible(HttpServletResponse response) {
+      if (response.containsHeader("Content-Encoding")) {
+        return false;
+      }
+      String contentType = response.getContentType();
+      if (contentType == null) {
+        return false;
+      }
+      int parameters = contentType.indexOf(';');
+      String mediaType = parameters < 0 ? contentType : contentType.substring(0, parameters);
+      return contentTypes.contains(mediaType.trim().toLowerCase());
+    }
+
+    private void resetBuffer() {
+      buffer.reset();
+    }
+
+    private void discard() {
+      buffer.reset();
+      finished = true;
+      if (deflater != null) {
+        encoding.getDeflaters().release(deflater);
+        deflater = null;
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      // Held back bodies are not flushed; that would commit them before their length is known.
+      if (out != null) {
+        out.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      HttpServletResponse response = (HttpServletResponse) getResponse();
+      if (out == null) {
+        if (buffer.size() > 0) {
+          response.setContentLength(buffer.size());
+          buffer.writeTo(response.getOutputStream());
+        }
+        return;
+      }
+      if (deflater == null) {
+        return;
+      }
+      try {
+        ((DeflaterOutputStream) out).finish();
+        if (encoding.isGzipFormat()) {
+          ServletOutputStream raw = response.getOutputStream();
+          writeIntLittleEndian(raw, (int) crc.getValue());
+          writeIntLittleEndian(raw, (int) deflater.getBytesRead());
+        }
+      } finally {
+        encoding.getDeflaters().release(deflater);
+        deflater = null;
+      }
+    }
+
+    /* Held back bodies can always be written; otherwise it depends on the wrapped stream. */
+
+    @Override
+    public boolean isReady() {
+      try {
+        return out == null || getResponse().getOutputStream().isReady();
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+    @Override
+    public void setWriteListener(WriteListener listener) {
+      try {
+        getResponse().getOutputStream().setWriteListener(listener);
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not get the response stream", e);
+      }
+    }
+  }
+
+  private static void writeIntLittleEndian(OutputStream out, int value) throws IOException {
+    out.write(value);
+    out.write(value >>> 8);
+    out.write(value >>> 16);
+    out.write(value >>> 24);
+  }
+}
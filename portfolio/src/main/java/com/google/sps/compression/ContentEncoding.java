@@ -0,0 +1,96 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.compression;
+
+import java.util.zip.Deflater;
+
+/** Content codings responses can be compressed with, in order of preference. */
+public enum ContentEncoding {
+  GZIP("gzip", true),
+  DEFLATE("deflate", false);
+
+  private final String label;
+  private final boolean gzipFormat;
+  private final DeflaterPool deflaters;
+
+  private ContentEncoding(String label, boolean gzipFormat) {
+    this.label = label;
+    this.gzipFormat = gzipFormat;
+    // Gzip wraps raw deflate data in its own header and trailer, deflate is the zlib format.
+    this.deflaters = new DeflaterPool(Deflater.DEFAULT_COMPRESSION, gzipFormat);
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  boolean isGzipFormat() {
+    return gzipFormat;
+  }
+
+  DeflaterPool getDeflaters() {
+    return deflaters;
+  }
+
+  /**
+   * Returns the coding the client prefers by the quality values in its {@code Accept-Encoding}
+   * header, or null if it accepts none of them or sent no header. Ties go to the coding listed
+   * first in this enum, and {@code *} stands for every coding not listed in the header.
+   */
+  public static ContentEncoding negotiate(String acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+    double[] qualities = new double[values().length];
+    double otherQuality = 0;
+    boolean[] listed = new boolean[values().length];
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parts = coding.split(";");
+      String name = parts[0].trim();
+      double quality = 1;
+      for (int i = 1; i < parts.length; i++) {
+        String parameter = parts[i].trim();
+        if (parameter.startsWith("q=")) {
+          try {
+            quality = Double.parseDouble(parameter.substring(2));
+          } catch (NumberFormatException e) {
+            quality = 0;
+          }
+        }
+      }
+      if (name.equals("*")) {
+        otherQuality = quality;
+        continue;
+      }
+      for (ContentEncoding encoding : values()) {
+        if (encoding.label.equalsIgnoreCase(name)) {
+          qualities[encoding.ordinal()] = quality;
+          listed[encoding.ordinal()] = true;
+        }
+      }
+    }
+
+    ContentEncoding best = null;
+    double bestQuality = 0;
+    for (ContentEncoding encoding : values()) {
+      double quality = listed[encoding.ordinal()] ? qualities[encoding.ordinal()] : otherQuality;
+      if (quality > bestQuality) {
+        best = encoding;
+        bestQuality = quality;
+      }
+    }
+    return best;
+  }
+}
@@ -0,0 +1,57 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Keeps deflaters for reuse between responses. Every deflater holds native zlib state that is only
+ * released by {@link Deflater#end()} or finalization, so allocating one per response is far more
+ * expensive than resetting one. At most a fixed number of idle deflaters is kept; any more are
+ * ended when they are released.
+ */
+final class DeflaterPool {
+
+  private static final int MAX_IDLE = 8;
+
+  private final int level;
+  private final boolean nowrap;
+  private final BlockingQueue<Deflater> idle = new ArrayBlockingQueue<>(MAX_IDLE);
+
+  /**
+   * Creates a pool of deflaters with the given compression level that write raw deflate data if
+   * {@code nowrap} is true and zlib data otherwise.
+   */
+  DeflaterPool(int level, boolean nowrap) {
+    this.level = level;
+    this.nowrap = nowrap;
+  }
+
+  /** Returns an idle deflater, or a new one if there is none. */
+  Deflater acquire() {
+    Deflater deflater = idle.poll();
+    return deflater != null ? deflater : new Deflater(level, nowrap);
+  }
+
+  /** Returns a deflater to the pool. It must not be used by the caller afterwards. */
+  void release(Deflater deflater) {
+    deflater.reset();
+    if (!idle.offer(deflater)) {
+      deflater.end();
+    }
+  }
+}
@@ -14,6 +14,12 @@
 
 package com.google.sps.data;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+
 /** A helper class for passing comment data. */
 public final class Comment {
 
@@ -32,4 +38,98 @@ public final class Comment {
     this.time = time;
     this.mood = mood;
   }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getContent() {
+    return content;
+  }
+
+  public String getEmail() {
+    return email;
+  }
+
+  public String getUsername() {
+    return username;
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+  public String getMood() {
+    return mood;
+  }
+
+  /** Returns a copy of this comment with the given ID. */
+  public Comment withId(long id) {
+    return new Comment(id, content, email, username, time, mood);
+  }
+
+  /** Reads and writes comments field by field instead of through reflection. */
+  static final class Adapter extends TypeAdapter<Comment> {
+    @Override
+    public void write(JsonWriter out, Comment comment) throws IOException {
+      if (comment == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("id").value(comment.id);
+      out.name("content").value(comment.content);
+      out.name("email").value(comment.email);
+      out.name("username").value(comment.username);
+      out.name("time").value(comment.time);
+      out.name("mood").value(comment.mood);
+      out.endObject();
+    }
+
+    @Override
+    public Comment read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      long id = 0;
+      String content = null;
+      String email = null;
+      String username = null;
+      long time = 0;
+      String mood = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          continue;
+        }
+        switch (name) {
+          case "id":
+            id = in.nextLong();
+            break;
+          case "content":
+            content = in.nextString();
+            break;
+          case "email":
+            email = in.nextString();
+            break;
+          case "username":
+            username = in.nextString();
+            break;
+          case "time":
+            time = in.nextLong();
+            break;
+          case "mood":
+            mood = in.nextString();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return new Comment(id, content, email, username, time, mood);
+    }
+  }
 }
@@ -0,0 +1,161 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of serialized first pages of the comment feed, keyed by sort order and limit.
+ * Entries are evicted least recently used once the cache is full and expire after a fixed time. Any
+ * comment write on this instance invalidates the whole cache. Every entry also carries the version
+ * of the comments it was read at, and is only served for that version. The version itself is kept
+ * for a few seconds, so that most requests never touch the repository, and is reloaded after every
+ * write on this instance; writes on other instances are therefore seen within a few seconds.
+ */
+public final class CommentCache {
+
+  private static final int MAX_ENTRIES = 64;
+  private static final long TIME_TO_LIVE_MILLIS = 60 * 1000;
+  private static final long VERSION_TIME_TO_LIVE_MILLIS = 5 * 1000;
+
+  private static final CommentCache INSTANCE = new CommentCache(MAX_ENTRIES, TIME_TO_LIVE_MILLIS);
+
+  private final long timeToLiveMillis;
+  private final LinkedHashMap<String, CachedPage> pages;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /* Incremented on every invalidation so that pages loaded before a write are not cached. */
+  private long generation = 0;
+
+  /* Last known version of the comments and when it was loaded, or -1 if it has to be loaded. */
+  private long version = -1;
+  private long versionLoadedMillis;
+
+  CommentCache(int maxEntries, long timeToLiveMillis) {
+    this.timeToLiveMillis = timeToLiveMillis;
+    this.pages =
+        new LinkedHashMap<String, CachedPage>(maxEntries, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, CachedPage> eldest) {
+            return size() > maxEntries;
+          }
+        };
+  }
+
+  public static CommentCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the cached UTF-8 JSON for the page or null if it is not cached, has expired or was read
+   * at a different {@code version} of the comments.
+   */
+  public synchronized byte[] get(String sortOrder, int limit, long version) {
+    String key = getKey(sortOrder, limit);
+    CachedPage page = pages.get(key);
+    if (page != null
+        && (page.version != version
+            || System.currentTimeMillis() - page.createdMillis > timeToLiveMillis)) {
+      pages.remove(key);
+      page = null;
+    }
+    if (page == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return page.json;
+  }
+
+  /**
+   * Returns the version of the comments, loading it from {@code comments} unless it was loaded
+   * recently and there were no writes on this instance since. Returns -1 if the version is unknown,
+   * in which case pages should be served without the cache.
+   */
+  public long getVersion(CommentRepository comments) {
+    long loadGeneration;
+    synchronized (this) {
+      if (version != -1
+          && System.currentTimeMillis() - versionLoadedMillis <= VERSION_TIME_TO_LIVE_MILLIS) {
+        return version;
+      }
+      loadGeneration = generation;
+    }
+    long loaded = comments.getVersion();
+    synchronized (this) {
+      // A version loaded before a write may already be stale, so it is used but not kept.
+      if (loadGeneration == generation && loaded != -1) {
+        version = loaded;
+        versionLoadedMillis = System.currentTimeMillis();
+      }
+    }
+    return loaded;
+  }
+
+  /** Returns the current generation, to be passed back to {@link #put} after loading a page. */
+  public synchronized long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Caches the UTF-8 JSON for the page read at {@code version} of the comments, unless the cache
+   * was invalidated since {@code generation} was read, in which case the page may already be stale.
+   */
+  public synchronized void put(
+      String sortOrder, int limit, byte[] json, long version, long generation) {
+    if (generation == this.generation) {
+      pages.put(
+          getKey(sortOrder, limit), new CachedPage(json, version, System.currentTimeMillis()));
+    }
+  }
+
+  /** Drops all cached pages. Called whenever comments are added or deleted. */
+  public synchronized void invalidate() {
+    generation++;
+    version = -1;
+    pages.clear();
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public synchronized int size() {
+    return pages.size();
+  }
+
+  private static String getKey(String sortOrder, int limit) {
+    return sortOrder + "/" + limit;
+  }
+
+  private static final class CachedPage {
+    private final byte[] json;
+    private final long version;
+    private final long createdMillis;
+
+    private CachedPage(byte[] json, long version, long createdMillis) {
+      this.json = json;
+      this.version = version;
+      this.createdMillis = createdMillis;
+    }
+  }
+}
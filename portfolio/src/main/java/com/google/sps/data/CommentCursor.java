@@ -0,0 +1,74 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last comment on a page of comments. Comments are ordered by time and then by ID,
+ * so the (time, ID) pair of the last comment is enough to resume the next page from the index.
+ */
+public final class CommentCursor {
+
+  private static final String SEPARATOR = ":";
+
+  private final long time;
+  private final long id;
+
+  public CommentCursor(long time, long id) {
+    this.time = time;
+    this.id = id;
+  }
+
+  public long getTime() {
+    return time;
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  /** Returns the opaque web-safe token handed to clients. */
+  public String encode() {
+    String value = time + SEPARATOR + id;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Parses a token previously returned by {@link #encode()}.
+   *
+   * @throws IllegalArgumentException if the token is malformed
+   */
+  public static CommentCursor decode(String token) {
+    String value;
+    try {
+      value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Malformed comment cursor: " + token, e);
+    }
+    String[] parts = value.split(SEPARATOR);
+    if (parts.length != 2) {
+      throw new IllegalArgumentException("Malformed comment cursor: " + token);
+    }
+    try {
+      return new CommentCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Malformed comment cursor: " + token, e);
+    }
+  }
+}
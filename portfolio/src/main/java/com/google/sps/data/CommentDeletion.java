@@ -0,0 +1,184 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.Query;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Deletes comments in bulk. Keys are consumed in chunks: every chunk is fetched with one batch get,
+ * to know which comments still exist and how to uncount them, and then deleted with one
+ * asynchronous batch delete, so that a few deletes are in flight while the next chunks are read.
+ * The comment stats and timeline are updated once, in one transaction after the deletes finished,
+ * also when some of them failed. Overlapping deletes of the same comments may both uncount them,
+ * which the daily rebuild of the stats repairs.
+ */
+final class CommentDeletion {
+
+  /* Datastore limit on keys per batch delete. */
+  private static final int MAX_BATCH_SIZE = 500;
+  private static final int MAX_PENDING_DELETES = 8;
+
+  private CommentDeletion() {}
+
+  /** Deletes the comments with the given keys and returns how many existed. */
+  static int deleteAll(
+      DatastoreService datastore, AsyncDatastoreService asyncDatastore, Iterable<Key> keys) {
+    Deque<PendingDelete> pending = new ArrayDeque<>();
+    CommentStats removed = CommentStats.empty();
+    List<Long> removedIds = new ArrayList<>();
+    try {
+      List<Key> chunk = new ArrayList<>();
+      for (Key key : keys) {
+        chunk.add(key);
+        if (chunk.size() == MAX_BATCH_SIZE) {
+          deleteChunk(datastore, asyncDatastore, chunk, pending, removed, removedIds);
+          chunk = new ArrayList<>();
+        }
+      }
+      if (!chunk.isEmpty()) {
+        deleteChunk(datastore, asyncDatastore, chunk, pending, removed, removedIds);
+      }
+      while (!pending.isEmpty()) {
+        complete(pending.removeFirst(), removed, removedIds);
+      }
+    } finally {
+      // Waits for the deletes still in flight after a failure, so that their comments are
+      // uncounted too, and only then uncounts everything deleted.
+      while (!pending.isEmpty()) {
+        try {
+          complete(pending.removeFirst(), removed, removedIds);
+        } catch (RuntimeException e) {
+          // Already failing; the first failure is the one thrown.
+        }
+      }
+      uncount(datastore, removed, removedIds);
+    }
+    return removedIds.size();
+  }
+
+  /**
+   * Deletes all comments matching {@code query}, whose keys are streamed with a keys-only query,
+   * and returns how many were deleted.
+   */
+  static int deleteMatching(
+      DatastoreService datastore, AsyncDatastoreService asyncDatastore, Query query) {
+    query.setKeysOnly();
+    FetchOptions fetchOptions = FetchOptions.Builder.withChunkSize(MAX_BATCH_SIZE);
+    Iterable<Entity> matches = datastore.prepare(query).asIterable(fetchOptions);
+    return deleteAll(
+        datastore,
+        asyncDatastore,
+        () -> {
+          Iterator<Entity> entities = matches.iterator();
+          return new Iterator<Key>() {
+            @Override
+            public boolean hasNext() {
+              return entities.hasNext();
+            }
+
+            @Override
+            public Key next() {
+              return entities.next().getKey();
+            }
+          };
+        });
+  }
+
+  private static void deleteChunk(
+      DatastoreService datastore,
+      AsyncDatastoreService asyncDatastore,
+      List<Key> chunk,
+      Deque<PendingDelete> pending,
+      CommentStats removed,
+      List<Long> removedIds) {
+    Collection<Entity> comments = datastore.get(chunk).values();
+    if (comments.isEmpty()) {
+      return;
+    }
+    List<Key> existing = new ArrayList<>();
+    for (Entity comment : comments) {
+      existing.add(comment.getKey());
+    }
+    if (pending.size() == MAX_PENDING_DELETES) {
+      complete(pending.removeFirst(), removed, removedIds);
+    }
+    pending.addLast(new PendingDelete(asyncDatastore.delete(existing), comments));
+  }
+
+  /** Waits for a delete to finish and records its comments as removed. */
+  private static void complete(PendingDelete delete, CommentStats removed, List<Long> removedIds) {
+    try {
+      delete.future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while deleting comments", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Could not delete comments", e.getCause());
+    }
+    for (Entity comment : delete.comments) {
+      removed.add(comment);
+      removedIds.add(comment.getKey().getId());
+    }
+  }
+
+  /** Uncounts the removed comments and drops them from the timeline in one transaction. */
+  private static void uncount(
+      DatastoreService datastore, CommentStats removed, List<Long> removedIds) {
+    if (removedIds.isEmpty()) {
+      return;
+    }
+    CommentStats.update(
+        datastore,
+        (transaction, stats) -> {
+          if (stats != null) {
+            stats.removeAll(removed);
+          }
+          CommentTimeline.update(
+              datastore,
+              transaction,
+              timeline -> {
+                for (long id : removedIds) {
+                  timeline.remove(id);
+                }
+              });
+        });
+  }
+
+  private static final class PendingDelete {
+    private final Future<Void> future;
+    private final Collection<Entity> comments;
+
+    private PendingDelete(Future<Void> future, Collection<Entity> comments) {
+      this.future = future;
+      this.comments = comments;
+    }
+  }
+}
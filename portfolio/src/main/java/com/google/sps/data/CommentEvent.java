@@ -0,0 +1,71 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * A change to the comment feed pushed to live subscribers: a comment that was added, a comment that
+ * was deleted, or a reset after which subscribers have to reload the feed because the change cannot
+ * be described comment by comment or events were missed.
+ */
+public final class CommentEvent {
+
+  /** Kinds of events, labelled with their SSE event names. */
+  public enum Type {
+    ADDED("added"),
+    DELETED("deleted"),
+    RESET("reset");
+
+    private final String label;
+
+    private Type(String label) {
+      this.label = label;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+  }
+
+  private final String id;
+  private final Type type;
+  private final Comment comment;
+  private final long commentId;
+
+  CommentEvent(String id, Type type, Comment comment, long commentId) {
+    this.id = id;
+    this.type = type;
+    this.comment = comment;
+    this.commentId = commentId;
+  }
+
+  /** Returns the ID subscribers resume from, see {@link CommentEventBus#subscribe}. */
+  public String getId() {
+    return id;
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /** Returns the added comment, or null unless this is an {@link Type#ADDED} event. */
+  public Comment getComment() {
+    return comment;
+  }
+
+  /** Returns the ID of the added or deleted comment, or 0 for a reset. */
+  public long getCommentId() {
+    return commentId;
+  }
+}
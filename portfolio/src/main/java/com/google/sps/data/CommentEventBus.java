@@ -0,0 +1,153 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * In-process publish/subscribe bus for changes to the comment feed. Servlets publish every comment
+ * write and live subscribers receive the events in order. The most recent events are kept so that a
+ * subscriber that reconnects can resume after the last event it saw; one that has missed more gets
+ * a reset event instead.
+ *
+ * <p>The bus owns no threads, since instances with automatic scaling may not run background
+ * threads. Events are delivered on the thread that publishes them, one at a time, so a subscriber
+ * is never called concurrently and must not block for long. Instead of periodic heartbeats, every
+ * subscriber gets one when it subscribes and one when it unsubscribes, which is what it resumes
+ * from.
+ *
+ * <p>Events only reach subscribers connected to the instance that published them. Event IDs carry
+ * the bus they come from, so IDs from another instance or from before a restart cause a reset.
+ */
+public final class CommentEventBus {
+
+  private static final int HISTORY_SIZE = 256;
+
+  /**
+   * Receives the events of the bus until one of its methods returns false. The methods must not
+   * throw, since that would fail the request that published the event.
+   */
+  public interface Subscriber {
+    boolean onEvent(CommentEvent event);
+
+    /**
+     * Called right after subscribing and when unsubscribing, with the ID of the last event
+     * published so far. The subscriber has received every event up to it, so it can resume from
+     * there.
+     */
+    boolean onHeartbeat(String lastEventId);
+  }
+
+  private final String busId = Long.toString(System.currentTimeMillis(), 36);
+
+  /* Guarded by this bus. */
+  private final Deque<CommentEvent> history = new ArrayDeque<>();
+  private final List<Subscriber> subscribers = new ArrayList<>();
+  private long sequence = 0;
+  private boolean shutDown;
+
+  public void publishAdded(Comment comment) {
+    publish(CommentEvent.Type.ADDED, comment, comment.getId());
+  }
+
+  public void publishDeleted(long commentId) {
+    publish(CommentEvent.Type.DELETED, null, commentId);
+  }
+
+  /** Tells subscribers to reload the feed, after bulk writes. */
+  public void publishReset() {
+    publish(CommentEvent.Type.RESET, null, 0);
+  }
+
+  private synchronized void publish(CommentEvent.Type type, Comment comment, long commentId) {
+    if (shutDown) {
+      return;
+    }
+    CommentEvent event = new CommentEvent(busId + "-" + ++sequence, type, comment, commentId);
+    history.addLast(event);
+    if (history.size() > HISTORY_SIZE) {
+      history.removeFirst();
+    }
+    subscribers.removeIf(subscriber -> !subscriber.onEvent(event));
+  }
+
+  /**
+   * Starts delivering events to {@code subscriber}. If {@code lastEventId} is not null, the events
+   * published after it are delivered first, or a reset if they are no longer all kept. Either way
+   * the subscriber then gets a heartbeat, so that it knows where to resume even if no event is
+   * published while it is subscribed.
+   */
+  public synchronized void subscribe(Subscriber subscriber, String lastEventId) {
+    if (shutDown) {
+      return;
+    }
+    if (lastEventId != null) {
+      long last = getSequence(lastEventId);
+      long oldest = history.isEmpty() ? sequence + 1 : getSequence(history.getFirst().getId());
+      if (last < oldest - 1 || last > sequence) {
+        CommentEvent reset = new CommentEvent(getLastEventId(), CommentEvent.Type.RESET, null, 0);
+        if (!subscriber.onEvent(reset)) {
+          return;
+        }
+      } else {
+        for (CommentEvent event : history) {
+          if (getSequence(event.getId()) > last && !subscriber.onEvent(event)) {
+            return;
+          }
+        }
+      }
+    }
+    if (subscriber.onHeartbeat(getLastEventId())) {
+      subscribers.add(subscriber);
+    }
+  }
+
+  /**
+   * Stops delivering events to {@code subscriber} and gives it a last heartbeat, so that it resumes
+   * after the events it received.
+   */
+  public synchronized void unsubscribe(Subscriber subscriber) {
+    if (subscribers.remove(subscriber)) {
+      subscriber.onHeartbeat(getLastEventId());
+    }
+  }
+
+  /** Drops all subscribers. Events published afterwards are dropped too. */
+  public synchronized void shutdown() {
+    shutDown = true;
+    subscribers.clear();
+  }
+
+  /** Returns the ID of the last event published, or of the start of the bus if there is none. */
+  private String getLastEventId() {
+    return busId + "-" + sequence;
+  }
+
+  /** Returns the sequence number of an event ID of this bus, or -1 for any other ID. */
+  private long getSequence(String eventId) {
+    String prefix = busId + "-";
+    if (!eventId.startsWith(prefix)) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(eventId.substring(prefix.length()));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,63 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * Selects comments to purge by email, mood and time range. Criteria that are null are not
+ * restricted; the time range includes {@code from} and excludes {@code to}.
+ */
+public final class CommentFilter {
+
+  private final String email;
+  private final String mood;
+  private final Long from;
+  private final Long to;
+
+  public CommentFilter(String email, String mood, Long from, Long to) {
+    this.email = email;
+    this.mood = mood;
+    this.from = from;
+    this.to = to;
+  }
+
+  public String getEmail() {
+    return email;
+  }
+
+  public String getMood() {
+    return mood;
+  }
+
+  public Long getFrom() {
+    return from;
+  }
+
+  public Long getTo() {
+    return to;
+  }
+
+  /** Checks if no criteria are set, in which case the filter matches every comment. */
+  public boolean isEmpty() {
+    return email == null && mood == null && from == null && to == null;
+  }
+
+  /** Checks if the comment meets all criteria. */
+  public boolean matches(Comment comment) {
+    return (email == null || email.equals(comment.getEmail()))
+        && (mood == null || mood.equals(comment.getMood()))
+        && (from == null || comment.getTime() >= from)
+        && (to == null || comment.getTime() < to);
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Storage of comments and their aggregated stats. Comments are ordered by time and then by ID, and
+ * new comments get their ID from the repository. Implementations are safe to use from concurrent
+ * requests.
+ */
+public interface CommentRepository {
+
+  /** Order in which comments are listed. */
+  enum Order {
+    NEWEST_FIRST,
+    OLDEST_FIRST
+  }
+
+  /** Receives the comments of a page as they are read. */
+  interface Visitor {
+    void visit(Comment comment) throws IOException;
+  }
+
+  /** Stores a new comment, ignoring its ID, and returns it with the ID it was given. */
+  Comment add(Comment comment);
+
+  /**
+   * Stores new comments, ignoring their IDs, and returns them with the IDs they were given in the
+   * same order.
+   */
+  List<Comment> addAll(List<Comment> comments);
+
+  /** Deletes the comment with the given ID and returns whether it existed. */
+  boolean delete(long id);
+
+  /** Deletes the comments with the given IDs and returns how many existed. */
+  int deleteAll(Iterable<Long> ids);
+
+  /** Deletes all comments matching {@code filter} and returns how many there were. */
+  int deleteMatching(CommentFilter filter);
+
+  /**
+   * Passes up to {@code limit} comments in the given order, starting after {@code after} or at the
+   * first comment if it is null, to {@code visitor}. Returns the cursor of the last comment passed
+   * if there are more comments, otherwise null.
+   */
+  CommentCursor list(Order order, CommentCursor after, int limit, Visitor visitor)
+      throws IOException;
+
+  /**
+   * Returns the first page of up to {@code limit} newest comments already serialized, or null if it
+   * is not kept serialized and has to be read with {@link #list}.
+   */
+  SerializedCommentPage getNewestPage(int limit);
+
+  /**
+   * Returns the time of the last comment write, which versions all pages of comments, or -1 if it
+   * is not known without recomputing the stats.
+   */
+  long getVersion();
+
+  /** Returns the aggregated stats of all comments. */
+  CommentStats getStats();
+
+  /** Recomputes the aggregated stats from all comments and returns them. */
+  CommentStats rebuildStats();
+}
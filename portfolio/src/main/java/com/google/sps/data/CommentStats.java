@@ -0,0 +1,281 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aggregated comment counts, persisted as a single comment stats entity so that they can be read
+ * with one get instead of a scan over all comments. The aggregate is updated in the same
+ * transaction as every comment write. A missing aggregate means the counts are unknown: writes
+ * leave it missing and the next read rebuilds it from a full scan.
+ */
+public final class CommentStats {
+
+  private static final int MAX_TRANSACTION_ATTEMPTS = 5;
+
+  private long total;
+  private long anonymousTotal;
+  private final Map<String, Long> moodCount;
+  private long lastUpdated;
+
+  private CommentStats(long total, long anonymousTotal, Map<String, Long> moodCount) {
+    this.total = total;
+    this.anonymousTotal = anonymousTotal;
+    this.moodCount = moodCount;
+  }
+
+  /** A write to run in the same transaction as the comment stats update. */
+  public interface Write {
+    /**
+     * Writes comments within {@code transaction} and records them in {@code stats}, which is null
+     * if the aggregate does not exist yet.
+     */
+    void apply(Transaction transaction, CommentStats stats);
+  }
+
+  public long getTotal() {
+    return total;
+  }
+
+  public long getAnonymousTotal() {
+    return anonymousTotal;
+  }
+
+  public Map<String, Long> getMoodCount() {
+    return moodCount;
+  }
+
+  public long getLastUpdated() {
+    return lastUpdated;
+  }
+
+  /** Counts a comment written with the given username and mood. */
+  public void add(String username, String mood) {
+    total++;
+    if (Constants.DEFAULT_USERNAME.equals(username)) {
+      anonymousTotal++;
+    }
+    moodCount.put(mood, moodCount.getOrDefault(mood, 0L) + 1);
+  }
+
+  /** Uncounts a deleted comment with the given username and mood. */
+  public void remove(String username, String mood) {
+    total = Math.max(0, total - 1);
+    if (Constants.DEFAULT_USERNAME.equals(username)) {
+      anonymousTotal = Math.max(0, anonymousTotal - 1);
+    }
+    long count = moodCount.getOrDefault(mood, 0L) - 1;
+    if (count > 0) {
+      moodCount.put(mood, count);
+    } else {
+      moodCount.remove(mood);
+    }
+  }
+
+  /** Uncounts all comments counted by {@code removed}. */
+  public void removeAll(CommentStats removed) {
+    total = Math.max(0, total - removed.total);
+    anonymousTotal = Math.max(0, anonymousTotal - removed.anonymousTotal);
+    for (Map.Entry<String, Long> mood : removed.moodCount.entrySet()) {
+      long count = moodCount.getOrDefault(mood.getKey(), 0L) - mood.getValue();
+      if (count > 0) {
+        moodCount.put(mood.getKey(), count);
+      } else {
+        moodCount.remove(mood.getKey());
+      }
+    }
+  }
+
+  /** Counts a comment entity. */
+  public void add(Entity commentEntity) {
+    add(getUsername(commentEntity), getMood(commentEntity));
+  }
+
+  /** Uncounts a comment entity. */
+  public void remove(Entity commentEntity) {
+    remove(getUsername(commentEntity), getMood(commentEntity));
+  }
+
+  /** Returns new stats counting no comments. */
+  public static CommentStats empty() {
+    return new CommentStats(0, 0, new HashMap<>());
+  }
+
+  /** Returns a snapshot of these stats that later updates do not change. */
+  CommentStats copy() {
+    CommentStats copy = new CommentStats(total, anonymousTotal, new HashMap<>(moodCount));
+    copy.lastUpdated = lastUpdated;
+    return copy;
+  }
+
+  /**
+   * Records that the stats were just updated. The time always moves forward, so that every update
+   * changes it even within the same millisecond.
+   */
+  void touch() {
+    lastUpdated = Math.max(System.currentTimeMillis(), lastUpdated + 1);
+  }
+
+  /** Returns the stored aggregate or null if it has not been built yet. */
+  public static CommentStats load(DatastoreService datastore) {
+    return load(datastore, null);
+  }
+
+  /**
+   * Runs {@code write} in a cross-group transaction that also updates the stored aggregate,
+   * retrying when the aggregate was concurrently modified.
+   */
+  public static void update(DatastoreService datastore, Write write) {
+    for (int attempt = 1; ; attempt++) {
+      Transaction transaction = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        CommentStats stats = load(datastore, transaction);
+        write.apply(transaction, stats);
+        if (stats != null) {
+          datastore.put(transaction, stats.toEntity());
+        }
+        transaction.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == MAX_TRANSACTION_ATTEMPTS) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  /**
+   * Recomputes the aggregate from a full scan over all comments and stores it. The stored aggregate
+   * is only replaced if it was not updated during the scan, which may have missed the comments
+   * written meanwhile; otherwise the comments are scanned again. Should the aggregate keep being
+   * updated, it is kept as it is and returned. Writes while no aggregate is stored update nothing
+   * to compare with, so the daily rebuild is what repairs counts missed then.
+   */
+  public static CommentStats rebuild(DatastoreService datastore) {
+    for (int attempt = 1; ; attempt++) {
+      CommentStats before = load(datastore, null);
+      CommentStats stats = empty();
+      Query query = new Query(CommentEntity.KIND.getLabel());
+      for (Entity entity : datastore.prepare(query).asIterable()) {
+        stats.add(entity);
+      }
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        CommentStats current = load(datastore, transaction);
+        if (before == null && current != null) {
+          // Built by a concurrent rebuild, and kept up to date by writes since.
+          return current;
+        }
+        if (before != null && (current == null || current.lastUpdated != before.lastUpdated)) {
+          if (attempt == MAX_TRANSACTION_ATTEMPTS) {
+            return current != null ? current : stats;
+          }
+          continue;
+        }
+        if (current != null) {
+          // Versions the rebuilt stats after the ones they replace.
+          stats.lastUpdated = current.lastUpdated;
+        }
+        datastore.put(transaction, stats.toEntity());
+        transaction.commit();
+        return stats;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == MAX_TRANSACTION_ATTEMPTS) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  private static CommentStats load(DatastoreService datastore, Transaction transaction) {
+    Entity entity;
+    try {
+      entity = datastore.get(transaction, getKey());
+    } catch (EntityNotFoundException e) {
+      return null;
+    }
+    long total = (long) entity.getProperty(CommentStatsEntity.TOTAL_PROPERTY.getLabel());
+    long anonymousTotal =
+        (long) entity.getProperty(CommentStatsEntity.ANONYMOUS_TOTAL_PROPERTY.getLabel());
+    // Moods and their counts are stored as parallel lists, which may be missing when empty.
+    Map<String, Long> moodCount = new HashMap<>();
+    @SuppressWarnings("unchecked")
+    List<String> moods =
+        (List<String>) entity.getProperty(CommentStatsEntity.MOODS_PROPERTY.getLabel());
+    @SuppressWarnings("unchecked")
+    List<Long> counts =
+        (List<Long>) entity.getProperty(CommentStatsEntity.MOOD_COUNTS_PROPERTY.getLabel());
+    if (moods != null && counts != null) {
+      for (int i = 0; i < moods.size(); i++) {
+        moodCount.put(moods.get(i), counts.get(i));
+      }
+    }
+    CommentStats stats = new CommentStats(total, anonymousTotal, moodCount);
+    stats.lastUpdated = (long) entity.getProperty(CommentStatsEntity.UPDATED_PROPERTY.getLabel());
+    return stats;
+  }
+
+  private Entity toEntity() {
+    touch();
+    List<String> moods = new ArrayList<>();
+    List<Long> counts = new ArrayList<>();
+    for (Map.Entry<String, Long> mood : moodCount.entrySet()) {
+      moods.add(mood.getKey());
+      counts.add(mood.getValue());
+    }
+    Entity entity = new Entity(getKey());
+    entity.setUnindexedProperty(CommentStatsEntity.TOTAL_PROPERTY.getLabel(), total);
+    entity.setUnindexedProperty(
+        CommentStatsEntity.ANONYMOUS_TOTAL_PROPERTY.getLabel(), anonymousTotal);
+    entity.setUnindexedProperty(CommentStatsEntity.MOODS_PROPERTY.getLabel(), moods);
+    entity.setUnindexedProperty(CommentStatsEntity.MOOD_COUNTS_PROPERTY.getLabel(), counts);
+    entity.setUnindexedProperty(CommentStatsEntity.UPDATED_PROPERTY.getLabel(), lastUpdated);
+    return entity;
+  }
+
+  private static Key getKey() {
+    return KeyFactory.createKey(
+        CommentStatsEntity.KIND.getLabel(), CommentStatsEntity.KEY_NAME.getLabel());
+  }
+
+  private static String getUsername(Entity commentEntity) {
+    return (String) commentEntity.getProperty(CommentEntity.USERNAME_PROPERTY.getLabel());
+  }
+
+  private static String getMood(Entity commentEntity) {
+    return (String) commentEntity.getProperty(CommentEntity.MOOD_PROPERTY.getLabel());
+  }
+}
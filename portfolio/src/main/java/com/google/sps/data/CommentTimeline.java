@@ -0,0 +1,266 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.Text;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The newest comments, stored pre-serialized in a single comment timeline entity so that the first
+ * page of the comment feed is one get and no serialization. The timeline is updated in the same
+ * transactions as the comment stats. It holds more comments than the largest page it serves, so
+ * that deletes, which shrink it, rarely make it too short; pages it cannot serve fall back to the
+ * indexed query. Like the stats, a missing timeline is rebuilt on the next read and the timeline is
+ * rebuilt daily.
+ */
+public final class CommentTimeline {
+
+  /** Largest first page of newest comments served from the timeline. */
+  public static final int MAX_PAGE_SIZE = 50;
+
+  private static final int CAPACITY = 2 * MAX_PAGE_SIZE;
+  private static final int MAX_TRANSACTION_ATTEMPTS = 5;
+
+  /* Newest first, ordered by time and then by ID like the comment feed. */
+  private final List<Long> ids;
+  private final List<Long> times;
+  private final List<String> comments;
+
+  /* Whether there are no comments older than the oldest one in the timeline. */
+  private boolean exhaustive;
+
+  private CommentTimeline(
+      List<Long> ids, List<Long> times, List<String> comments, boolean exhaustive) {
+    this.ids = ids;
+    this.times = times;
+    this.comments = comments;
+    this.exhaustive = exhaustive;
+  }
+
+  /**
+   * Returns the newest {@code limit} comments, or null if the timeline does not hold enough of
+   * them.
+   */
+  public SerializedCommentPage getPage(int limit) {
+    if (limit > MAX_PAGE_SIZE || (limit > ids.size() && !exhaustive)) {
+      return null;
+    }
+    int size = Math.min(limit, ids.size());
+    boolean hasMore = ids.size() > size || !exhaustive;
+    CommentCursor nextCursor =
+        hasMore && size > 0 ? new CommentCursor(times.get(size - 1), ids.get(size - 1)) : null;
+    return new SerializedCommentPage(new ArrayList<>(comments.subList(0, size)), nextCursor);
+  }
+
+  /** Adds a stored comment if it is among the newest ones. */
+  public void add(Comment comment) {
+    int position = 0;
+    while (position < ids.size() && isNewer(times.get(position), ids.get(position), comment)) {
+      position++;
+    }
+    if (position == ids.size() && !exhaustive) {
+      // Older than every comment held, and there may be others in between.
+      return;
+    }
+    ids.add(position, comment.getId());
+    times.add(position, comment.getTime());
+    comments.add(position, toJson(comment));
+    if (ids.size() > CAPACITY) {
+      ids.remove(CAPACITY);
+      times.remove(CAPACITY);
+      comments.remove(CAPACITY);
+      exhaustive = false;
+    }
+  }
+
+  /** Removes a deleted comment. */
+  public void remove(long id) {
+    int position = ids.indexOf(id);
+    if (position >= 0) {
+      ids.remove(position);
+      times.remove(position);
+      comments.remove(position);
+    }
+  }
+
+  /** Returns the stored timeline or null if it has not been built yet. */
+  public static CommentTimeline load(DatastoreService datastore) {
+    return load(datastore, null);
+  }
+
+  /**
+   * Applies {@code change} to the stored timeline within {@code transaction} and stores the result.
+   * Does nothing if the timeline has not been built yet.
+   */
+  public static void update(
+      DatastoreService datastore, Transaction transaction, Consumer<CommentTimeline> change) {
+    CommentTimeline timeline = load(datastore, transaction);
+    if (timeline != null) {
+      change.accept(timeline);
+      datastore.put(transaction, timeline.toEntity());
+    }
+  }
+
+  /**
+   * Recomputes the timeline from the newest comments and stores it. The stored timeline is only
+   * replaced if it did not change while the comments were read, since comments written meanwhile
+   * may be missing from the query; otherwise the comments are read again. Should the timeline keep
+   * changing, it is kept as it is and returned. Writes while no timeline is stored change nothing
+   * to compare with, so the daily rebuild is what repairs comments missed then.
+   */
+  public static CommentTimeline rebuild(DatastoreService datastore) {
+    for (int attempt = 1; ; attempt++) {
+      CommentTimeline before = load(datastore, null);
+      CommentTimeline timeline = readNewest(datastore);
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        CommentTimeline current = load(datastore, transaction);
+        if (before == null && current != null) {
+          // Built by a concurrent rebuild, and kept up to date by writes since.
+          return current;
+        }
+        if (!holdsSameComments(before, current)) {
+          if (attempt == MAX_TRANSACTION_ATTEMPTS) {
+            return current;
+          }
+          continue;
+        }
+        datastore.put(transaction, timeline.toEntity());
+        transaction.commit();
+        return timeline;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == MAX_TRANSACTION_ATTEMPTS) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  /** Reads the newest comments into a new timeline. */
+  private static CommentTimeline readNewest(DatastoreService datastore) {
+    Query query = new Query(CommentEntity.KIND.getLabel());
+    query.addSort(CommentEntity.TIME_PROPERTY.getLabel(), SortDirection.DESCENDING);
+    query.addSort(Entity.KEY_RESERVED_PROPERTY, SortDirection.DESCENDING);
+    List<Entity> newest =
+        datastore.prepare(query).asList(FetchOptions.Builder.withLimit(CAPACITY + 1));
+    CommentTimeline timeline =
+        new CommentTimeline(
+            new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), newest.size() <= CAPACITY);
+    for (Entity entity : newest.subList(0, Math.min(CAPACITY, newest.size()))) {
+      Comment comment = DatastoreCommentRepository.toComment(entity);
+      timeline.ids.add(comment.getId());
+      timeline.times.add(comment.getTime());
+      timeline.comments.add(toJson(comment));
+    }
+    return timeline;
+  }
+
+  /** Checks if two stored timelines, either of which may be missing, hold the same comments. */
+  private static boolean holdsSameComments(CommentTimeline a, CommentTimeline b) {
+    if (a == null || b == null) {
+      return a == b;
+    }
+    return a.ids.equals(b.ids) && a.exhaustive == b.exhaustive;
+  }
+
+  private static CommentTimeline load(DatastoreService datastore, Transaction transaction) {
+    Entity entity;
+    try {
+      entity = datastore.get(transaction, getKey());
+    } catch (EntityNotFoundException e) {
+      return null;
+    }
+    // Empty lists are not stored, so the properties are missing while the timeline is empty.
+    List<Long> ids = new ArrayList<>();
+    List<Long> times = new ArrayList<>();
+    List<String> comments = new ArrayList<>();
+    @SuppressWarnings("unchecked")
+    List<Long> storedIds =
+        (List<Long>) entity.getProperty(CommentTimelineEntity.IDS_PROPERTY.getLabel());
+    @SuppressWarnings("unchecked")
+    List<Long> storedTimes =
+        (List<Long>) entity.getProperty(CommentTimelineEntity.TIMES_PROPERTY.getLabel());
+    @SuppressWarnings("unchecked")
+    List<Text> storedComments =
+        (List<Text>) entity.getProperty(CommentTimelineEntity.COMMENTS_PROPERTY.getLabel());
+    if (storedIds != null && storedTimes != null && storedComments != null) {
+      ids.addAll(storedIds);
+      times.addAll(storedTimes);
+      for (Text comment : storedComments) {
+        comments.add(comment.getValue());
+      }
+    }
+    boolean exhaustive =
+        (boolean) entity.getProperty(CommentTimelineEntity.EXHAUSTIVE_PROPERTY.getLabel());
+    return new CommentTimeline(ids, times, comments, exhaustive);
+  }
+
+  private Entity toEntity() {
+    // Serialized comments can be longer than the limit for strings, so they are stored as texts.
+    List<Text> texts = new ArrayList<>();
+    for (String comment : comments) {
+      texts.add(new Text(comment));
+    }
+    Entity entity = new Entity(getKey());
+    entity.setUnindexedProperty(CommentTimelineEntity.IDS_PROPERTY.getLabel(), ids);
+    entity.setUnindexedProperty(CommentTimelineEntity.TIMES_PROPERTY.getLabel(), times);
+    entity.setUnindexedProperty(CommentTimelineEntity.COMMENTS_PROPERTY.getLabel(), texts);
+    entity.setUnindexedProperty(CommentTimelineEntity.EXHAUSTIVE_PROPERTY.getLabel(), exhaustive);
+    return entity;
+  }
+
+  /** Checks if the comment at (time, id) comes before {@code comment} among the newest first. */
+  private static boolean isNewer(long time, long id, Comment comment) {
+    return time != comment.getTime() ? time > comment.getTime() : id > comment.getId();
+  }
+
+  /** Serializes a comment the way the comment feed does. */
+  private static String toJson(Comment comment) {
+    StringWriter out = new StringWriter();
+    JsonWriter writer = new JsonWriter(out);
+    writer.setSerializeNulls(false);
+    try {
+      new Comment.Adapter().write(writer, comment);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toString();
+  }
+
+  private static Key getKey() {
+    return KeyFactory.createKey(
+        CommentTimelineEntity.KIND.getLabel(), CommentTimelineEntity.KEY_NAME.getLabel());
+  }
+}
@@ -0,0 +1,39 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * Specifies the kind, key name and property names to use for the comment timeline entity (the
+ * single entity that stores the newest comments pre-serialized) in the datastore database.
+ */
+public enum CommentTimelineEntity {
+  KIND("CommentTimeline"),
+  KEY_NAME("new"),
+  IDS_PROPERTY("ids"),
+  TIMES_PROPERTY("times"),
+  COMMENTS_PROPERTY("comments"),
+  EXHAUSTIVE_PROPERTY("exhaustive");
+
+  /* Labels the comment timeline and its properties in the database. */
+  private final String label;
+
+  private CommentTimelineEntity(String label) {
+    this.label = label;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+}
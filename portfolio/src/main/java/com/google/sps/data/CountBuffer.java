@@ -0,0 +1,141 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for counter increments. Increments are collected in memory in one striped
+ * {@link LongAdder} per key and written to storage in batches once either the flush interval has
+ * passed or enough increments are pending, so most increments never wait on storage.
+ *
+ * <p>Flushes run on the request thread that notices one is due (App Engine only allows datastore
+ * calls from request threads) and on servlet shutdown. Only one flush runs at a time, and request
+ * threads that find one running skip theirs instead of waiting for it. Increments not yet flushed
+ * when an instance dies are lost, which bounds the loss to one flush interval or threshold per
+ * instance.
+ */
+public final class CountBuffer<K> {
+
+  /** Destination that pending increments are flushed to. */
+  public interface Sink<K> {
+    /** Adds {@code delta} to the stored count for {@code key}. */
+    void write(K key, long delta);
+  }
+
+  private final long flushIntervalMillis;
+  private final long flushThreshold;
+
+  /* Adders are never reset; the part of each sum that was already flushed is tracked instead. */
+  private final ConcurrentHashMap<K, LongAdder> counts = new ConcurrentHashMap<>();
+  private final Map<K, Long> flushedCounts = new ConcurrentHashMap<>();
+  private final LongAdder pending = new LongAdder();
+  private final AtomicLong lastFlushMillis = new AtomicLong(System.currentTimeMillis());
+  private final ReentrantLock flushLock = new ReentrantLock();
+
+  public CountBuffer(long flushIntervalMillis, long flushThreshold) {
+    this.flushIntervalMillis = flushIntervalMillis;
+    this.flushThreshold = flushThreshold;
+  }
+
+  /** Records one increment for {@code key}. */
+  public void increment(K key) {
+    counts.computeIfAbsent(key, k -> new LongAdder()).increment();
+    pending.increment();
+  }
+
+  /** Checks if enough time has passed or enough increments are pending to flush. */
+  public boolean isFlushDue() {
+    return pending.sum() >= flushThreshold
+        || System.currentTimeMillis() - lastFlushMillis.get() >= flushIntervalMillis;
+  }
+
+  /**
+   * Writes all pending increments to {@code sink}, waiting for a flush that is already running to
+   * finish first. Keys whose increments fail to be written stay pending and are retried on the next
+   * flush.
+   */
+  public void flush(Sink<K> sink) {
+    flushLock.lock();
+    try {
+      writePending(sink);
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /**
+   * Like {@link #flush}, but returns false right away without flushing if another flush is already
+   * running.
+   */
+  public boolean tryFlush(Sink<K> sink) {
+    if (!flushLock.tryLock()) {
+      return false;
+    }
+    try {
+      writePending(sink);
+      return true;
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  private void writePending(Sink<K> sink) {
+    lastFlushMillis.set(System.currentTimeMillis());
+    RuntimeException failure = null;
+    for (Map.Entry<K, LongAdder> entry : counts.entrySet()) {
+      K key = entry.getKey();
+      long count = entry.getValue().sum();
+      long delta = count - flushedCounts.getOrDefault(key, 0L);
+      if (delta == 0) {
+        continue;
+      }
+      try {
+        sink.write(key, delta);
+      } catch (RuntimeException e) {
+        failure = e;
+        continue;
+      }
+      flushedCounts.put(key, count);
+      pending.add(-delta);
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /** Forgets keys that will not be incremented again once their increments have been flushed. */
+  public void retire(K key) {
+    flushLock.lock();
+    try {
+      LongAdder count = counts.get(key);
+      if (count != null && count.sum() == flushedCounts.getOrDefault(key, 0L)) {
+        counts.remove(key);
+        flushedCounts.remove(key);
+      }
+    } finally {
+      flushLock.unlock();
+    }
+  }
+
+  /** Returns the keys that currently have a counter in the buffer. */
+  public Iterable<K> keys() {
+    return counts.keySet();
+  }
+}
@@ -0,0 +1,290 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
+import com.google.appengine.api.datastore.Query.Filter;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores comments as comment entities in the datastore database, with their stats and the newest
+ * comments kept in single aggregate entities (see {@link CommentStats} and {@link
+ * CommentTimeline}).
+ */
+public final class DatastoreCommentRepository implements CommentRepository {
+
+  /* Datastore limit on entities per batch put. */
+  private static final int MAX_BATCH_SIZE = 500;
+
+  private final DatastoreService datastore;
+  private final AsyncDatastoreService asyncDatastore;
+
+  public DatastoreCommentRepository(
+      DatastoreService datastore, AsyncDatastoreService asyncDatastore) {
+    this.datastore = datastore;
+    this.asyncDatastore = asyncDatastore;
+  }
+
+  /** Stores the comment in the same transaction as its stats and timeline updates. */
+  @Override
+  public Comment add(Comment comment) {
+    Entity commentEntity = toEntity(comment);
+    CommentStats.update(
+        datastore,
+        (transaction, stats) -> {
+          datastore.put(transaction, commentEntity);
+          if (stats != null) {
+            stats.add(comment.getUsername(), comment.getMood());
+          }
+          Comment added = comment.withId(commentEntity.getKey().getId());
+          CommentTimeline.update(datastore, transaction, timeline -> timeline.add(added));
+        });
+    return comment.withId(commentEntity.getKey().getId());
+  }
+
+  /**
+   * Stores the comments with one batch put per 500 comments. Their entity groups cannot all join
+   * one transaction, so the stats and the timeline are updated right after every put instead of
+   * atomically with it; the daily rebuild repairs them should a request die in between.
+   */
+  @Override
+  public List<Comment> addAll(List<Comment> comments) {
+    List<Comment> added = new ArrayList<>();
+    for (int i = 0; i < comments.size(); i += MAX_BATCH_SIZE) {
+      List<Comment> batch = comments.subList(i, Math.min(i + MAX_BATCH_SIZE, comments.size()));
+      List<Entity> entities = new ArrayList<>();
+      for (Comment comment : batch) {
+        entities.add(toEntity(comment));
+      }
+      List<Key> keys = datastore.put(entities);
+      List<Comment> batchAdded = new ArrayList<>();
+      for (int j = 0; j < batch.size(); j++) {
+        batchAdded.add(batch.get(j).withId(keys.get(j).getId()));
+      }
+      CommentStats.update(
+          datastore,
+          (transaction, stats) -> {
+            if (stats != null) {
+              for (Comment comment : batchAdded) {
+                stats.add(comment.getUsername(), comment.getMood());
+              }
+            }
+            CommentTimeline.update(
+                datastore,
+                transaction,
+                timeline -> {
+                  for (Comment comment : batchAdded) {
+                    timeline.add(comment);
+                  }
+                });
+          });
+      added.addAll(batchAdded);
+    }
+    return added;
+  }
+
+  /** Deletes the comment, uncounts it and drops it from the timeline in one transaction. */
+  @Override
+  public boolean delete(long id) {
+    Key commentEntityKey = getKey(id);
+    boolean[] deleted = {false};
+    CommentStats.update(
+        datastore,
+        (transaction, stats) -> {
+          Entity commentEntity;
+          try {
+            commentEntity = datastore.get(transaction, commentEntityKey);
+          } catch (EntityNotFoundException e) {
+            // Already deleted, so there is nothing to uncount.
+            deleted[0] = false;
+            return;
+          }
+          datastore.delete(transaction, commentEntityKey);
+          if (stats != null) {
+            stats.remove(commentEntity);
+          }
+          CommentTimeline.update(datastore, transaction, timeline -> timeline.remove(id));
+          deleted[0] = true;
+        });
+    return deleted[0];
+  }
+
+  @Override
+  public int deleteAll(Iterable<Long> ids) {
+    List<Key> keys = new ArrayList<>();
+    for (long id : ids) {
+      keys.add(getKey(id));
+    }
+    return CommentDeletion.deleteAll(datastore, asyncDatastore, keys);
+  }
+
+  @Override
+  public int deleteMatching(CommentFilter filter) {
+    Query query = new Query(CommentEntity.KIND.getLabel());
+    List<Filter> filters = new ArrayList<>();
+    if (filter.getEmail() != null) {
+      filters.add(
+          new FilterPredicate(
+              CommentEntity.EMAIL_PROPERTY.getLabel(), FilterOperator.EQUAL, filter.getEmail()));
+    }
+    if (filter.getMood() != null) {
+      filters.add(
+          new FilterPredicate(
+              CommentEntity.MOOD_PROPERTY.getLabel(), FilterOperator.EQUAL, filter.getMood()));
+    }
+    if (filter.getFrom() != null) {
+      filters.add(
+          new FilterPredicate(
+              CommentEntity.TIME_PROPERTY.getLabel(),
+              FilterOperator.GREATER_THAN_OR_EQUAL,
+              filter.getFrom()));
+    }
+    if (filter.getTo() != null) {
+      filters.add(
+          new FilterPredicate(
+              CommentEntity.TIME_PROPERTY.getLabel(), FilterOperator.LESS_THAN, filter.getTo()));
+    }
+    if (filters.size() == 1) {
+      query.setFilter(filters.get(0));
+    } else if (filters.size() > 1) {
+      query.setFilter(CompositeFilterOperator.and(filters));
+    }
+    return CommentDeletion.deleteMatching(datastore, asyncDatastore, query);
+  }
+
+  /**
+   * Reads the page with one query resumed from the (time, ID) position of the cursor, so earlier
+   * comments are never re-read.
+   */
+  @Override
+  public CommentCursor list(Order order, CommentCursor after, int limit, Visitor visitor)
+      throws IOException {
+    SortDirection direction =
+        order == Order.OLDEST_FIRST ? SortDirection.ASCENDING : SortDirection.DESCENDING;
+    // Ties on time are broken by key so that the order (and therefore the cursor) is stable.
+    Query query = new Query(CommentEntity.KIND.getLabel());
+    query.addSort(CommentEntity.TIME_PROPERTY.getLabel(), direction);
+    query.addSort(Entity.KEY_RESERVED_PROPERTY, direction);
+    if (after != null) {
+      FilterOperator operator =
+          direction == SortDirection.ASCENDING
+              ? FilterOperator.GREATER_THAN_OR_EQUAL
+              : FilterOperator.LESS_THAN_OR_EQUAL;
+      query.setFilter(
+          new FilterPredicate(CommentEntity.TIME_PROPERTY.getLabel(), operator, after.getTime()));
+    }
+
+    // One extra comment is fetched to find out whether there is a next page.
+    FetchOptions fetchOptions = FetchOptions.Builder.withChunkSize(limit + 1);
+    int count = 0;
+    CommentCursor last = null;
+    for (Entity entity : datastore.prepare(query).asIterable(fetchOptions)) {
+      Comment comment = toComment(entity);
+      if (after != null && !isAfterCursor(after, comment, direction)) {
+        // Comments sharing the cursor's timestamp that were already on the previous page.
+        continue;
+      }
+      if (count == limit) {
+        return last;
+      }
+      visitor.visit(comment);
+      count++;
+      last = new CommentCursor(comment.getTime(), comment.getId());
+    }
+    return null;
+  }
+
+  /** Loads the stored timeline, building it from the newest comments the first time. */
+  @Override
+  public SerializedCommentPage getNewestPage(int limit) {
+    CommentTimeline timeline = CommentTimeline.load(datastore);
+    if (timeline == null) {
+      timeline = CommentTimeline.rebuild(datastore);
+    }
+    return timeline.getPage(limit);
+  }
+
+  /** Reads the time from the stored stats, which every comment write updates. */
+  @Override
+  public long getVersion() {
+    CommentStats stats = CommentStats.load(datastore);
+    return stats != null ? stats.getLastUpdated() : -1;
+  }
+
+  /** Loads the stored stats, building them from all comments the first time. */
+  @Override
+  public CommentStats getStats() {
+    CommentStats stats = CommentStats.load(datastore);
+    if (stats == null) {
+      stats = CommentStats.rebuild(datastore);
+    }
+    return stats;
+  }
+
+  /** Also rebuilds the timeline, which drifts the same way should a bulk write die midway. */
+  @Override
+  public CommentStats rebuildStats() {
+    CommentTimeline.rebuild(datastore);
+    return CommentStats.rebuild(datastore);
+  }
+
+  /** Checks if a comment comes strictly after the cursor position in the given sort order. */
+  private static boolean isAfterCursor(
+      CommentCursor cursor, Comment comment, SortDirection direction) {
+    int order =
+        comment.getTime() != cursor.getTime()
+            ? Long.compare(comment.getTime(), cursor.getTime())
+            : Long.compare(comment.getId(), cursor.getId());
+    return direction == SortDirection.ASCENDING ? order > 0 : order < 0;
+  }
+
+  private static Key getKey(long id) {
+    return KeyFactory.createKey(CommentEntity.KIND.getLabel(), id);
+  }
+
+  /** Creates a new comment entity with an ID to be allocated when it is put. */
+  private static Entity toEntity(Comment comment) {
+    Entity commentEntity = new Entity(CommentEntity.KIND.getLabel());
+    commentEntity.setProperty(CommentEntity.CONTENT_PROPERTY.getLabel(), comment.getContent());
+    commentEntity.setProperty(CommentEntity.EMAIL_PROPERTY.getLabel(), comment.getEmail());
+    commentEntity.setProperty(CommentEntity.USERNAME_PROPERTY.getLabel(), comment.getUsername());
+    commentEntity.setProperty(CommentEntity.TIME_PROPERTY.getLabel(), comment.getTime());
+    commentEntity.setProperty(CommentEntity.MOOD_PROPERTY.getLabel(), comment.getMood());
+    return commentEntity;
+  }
+
+  static Comment toComment(Entity entity) {
+    return new Comment(
+        entity.getKey().getId(),
+        (String) entity.getProperty(CommentEntity.CONTENT_PROPERTY.getLabel()),
+        (String) entity.getProperty(CommentEntity.EMAIL_PROPERTY.getLabel()),
+        (String) entity.getProperty(CommentEntity.USERNAME_PROPERTY.getLabel()),
+        (long) entity.getProperty(CommentEntity.TIME_PROPERTY.getLabel()),
+        (String) entity.getProperty(CommentEntity.MOOD_PROPERTY.getLabel()));
+  }
+}
@@ -0,0 +1,164 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps comments in process memory, for load tests and benchmarks that run without the datastore.
+ * Comments are held in a concurrent skip list ordered by (time, ID), so pages are read as a range
+ * of the list, and in a hash index by ID for deletes. Nothing survives a restart.
+ */
+public final class InMemoryCommentRepository implements CommentRepository {
+
+  private static final Comparator<CommentCursor> ORDER =
+      Comparator.comparingLong(CommentCursor::getTime).thenComparingLong(CommentCursor::getId);
+
+  private final ConcurrentSkipListMap<CommentCursor, Comment> comments =
+      new ConcurrentSkipListMap<>(ORDER);
+  private final Map<Long, Comment> commentsById = new ConcurrentHashMap<>();
+  private final AtomicLong nextId = new AtomicLong(1);
+
+  /* Guarded by itself. */
+  private final CommentStats stats = CommentStats.empty();
+
+  @Override
+  public Comment add(Comment comment) {
+    Comment added = comment.withId(nextId.getAndIncrement());
+    // Listed first and indexed second, so that a delete always finds it in the list.
+    comments.put(getPosition(added), added);
+    commentsById.put(added.getId(), added);
+    synchronized (stats) {
+      stats.add(added.getUsername(), added.getMood());
+      stats.touch();
+    }
+    return added;
+  }
+
+  @Override
+  public List<Comment> addAll(List<Comment> comments) {
+    List<Comment> added = new ArrayList<>();
+    for (Comment comment : comments) {
+      added.add(add(comment));
+    }
+    return added;
+  }
+
+  @Override
+  public boolean delete(long id) {
+    Comment comment = commentsById.remove(id);
+    if (comment == null) {
+      return false;
+    }
+    comments.remove(getPosition(comment));
+    synchronized (stats) {
+      stats.remove(comment.getUsername(), comment.getMood());
+      stats.touch();
+    }
+    return true;
+  }
+
+  @Override
+  public int deleteAll(Iterable<Long> ids) {
+    int deleted = 0;
+    for (long id : ids) {
+      if (delete(id)) {
+        deleted++;
+      }
+    }
+    return deleted;
+  }
+
+  @Override
+  public int deleteMatching(CommentFilter filter) {
+    if (filter.getFrom() != null && filter.getTo() != null && filter.getFrom() >= filter.getTo()) {
+      // An empty time range, which the submaps below would reject.
+      return 0;
+    }
+    NavigableMap<CommentCursor, Comment> range = comments;
+    if (filter.getFrom() != null) {
+      range = range.tailMap(new CommentCursor(filter.getFrom(), Long.MIN_VALUE), true);
+    }
+    if (filter.getTo() != null) {
+      range = range.headMap(new CommentCursor(filter.getTo(), Long.MIN_VALUE), false);
+    }
+    int deleted = 0;
+    for (Comment comment : range.values()) {
+      if (filter.matches(comment) && delete(comment.getId())) {
+        deleted++;
+      }
+    }
+    return deleted;
+  }
+
+  @Override
+  public CommentCursor list(Order order, CommentCursor after, int limit, Visitor visitor)
+      throws IOException {
+    NavigableMap<CommentCursor, Comment> range =
+        order == Order.OLDEST_FIRST ? comments : comments.descendingMap();
+    if (after != null) {
+      range = range.tailMap(after, false);
+    }
+    int count = 0;
+    CommentCursor last = null;
+    for (Map.Entry<CommentCursor, Comment> entry : range.entrySet()) {
+      if (count == limit) {
+        return last;
+      }
+      visitor.visit(entry.getValue());
+      count++;
+      last = entry.getKey();
+    }
+    return null;
+  }
+
+  /** Comments are not kept serialized; listing them from memory is as fast. */
+  @Override
+  public SerializedCommentPage getNewestPage(int limit) {
+    return null;
+  }
+
+  @Override
+  public long getVersion() {
+    synchronized (stats) {
+      return stats.getLastUpdated();
+    }
+  }
+
+  @Override
+  public CommentStats getStats() {
+    synchronized (stats) {
+      return stats.copy();
+    }
+  }
+
+  /** The stats are always exact, so there is nothing to recompute. */
+  @Override
+  public CommentStats rebuildStats() {
+    return getStats();
+  }
+
+  private static CommentCursor getPosition(Comment comment) {
+    return new CommentCursor(comment.getTime(), comment.getId());
+  }
+}
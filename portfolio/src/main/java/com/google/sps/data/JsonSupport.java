@@ -0,0 +1,131 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds the Gson instance shared by all servlets. Types that are written on every request have
+ * hand-written adapters, so serializing them needs no reflection, and all adapters are looked up
+ * once up front so that the first requests do not pay for it either.
+ */
+public final class JsonSupport {
+
+  /** Declared type of stats maps from names to counts, such as views per day. */
+  public static final Type COUNTS_TYPE = new TypeToken<Map<String, Long>>() {}.getType();
+
+  /** Declared type of stats maps of named groups of counts, such as the comment stats. */
+  public static final Type GROUPED_COUNTS_TYPE =
+      new TypeToken<Map<String, Map<String, Long>>>() {}.getType();
+
+  private JsonSupport() {}
+
+  /** Returns a new thread-safe Gson with all adapters registered and warmed up. */
+  public static Gson createGson() {
+    CountsAdapter countsAdapter = new CountsAdapter();
+    Gson gson =
+        new GsonBuilder()
+            .registerTypeAdapter(Comment.class, new Comment.Adapter())
+            .registerTypeAdapter(LoginStatus.class, new LoginStatus.Adapter())
+            .registerTypeAdapter(COUNTS_TYPE, countsAdapter)
+            .registerTypeAdapter(GROUPED_COUNTS_TYPE, new GroupedCountsAdapter(countsAdapter))
+            .create();
+    gson.getAdapter(Comment.class);
+    gson.getAdapter(LoginStatus.class);
+    gson.getAdapter(TypeToken.get(COUNTS_TYPE));
+    gson.getAdapter(TypeToken.get(GROUPED_COUNTS_TYPE));
+    return gson;
+  }
+
+  /** Reads and writes a map of counts as a JSON object of numbers. */
+  private static final class CountsAdapter extends TypeAdapter<Map<String, Long>> {
+    @Override
+    public void write(JsonWriter out, Map<String, Long> counts) throws IOException {
+      if (counts == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      for (Map.Entry<String, Long> count : counts.entrySet()) {
+        out.name(count.getKey()).value(count.getValue());
+      }
+      out.endObject();
+    }
+
+    @Override
+    public Map<String, Long> read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      Map<String, Long> counts = new LinkedHashMap<>();
+      in.beginObject();
+      while (in.hasNext()) {
+        counts.put(in.nextName(), in.nextLong());
+      }
+      in.endObject();
+      return counts;
+    }
+  }
+
+  /** Reads and writes a map of named count maps as a JSON object of objects. */
+  private static final class GroupedCountsAdapter
+      extends TypeAdapter<Map<String, Map<String, Long>>> {
+    private final CountsAdapter countsAdapter;
+
+    private GroupedCountsAdapter(CountsAdapter countsAdapter) {
+      this.countsAdapter = countsAdapter;
+    }
+
+    @Override
+    public void write(JsonWriter out, Map<String, Map<String, Long>> groups) throws IOException {
+      if (groups == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      for (Map.Entry<String, Map<String, Long>> group : groups.entrySet()) {
+        out.name(group.getKey());
+        countsAdapter.write(out, group.getValue());
+      }
+      out.endObject();
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      Map<String, Map<String, Long>> groups = new LinkedHashMap<>();
+      in.beginObject();
+      while (in.hasNext()) {
+        groups.put(in.nextName(), countsAdapter.read(in));
+      }
+      in.endObject();
+      return groups;
+    }
+  }
+}
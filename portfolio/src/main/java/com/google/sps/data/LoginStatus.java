@@ -14,6 +14,12 @@
 
 package com.google.sps.data;
 
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+
 /** A helper class for passing login data. */
 public final class LoginStatus {
 
@@ -26,4 +32,54 @@ public final class LoginStatus {
     this.userEmail = userEmail;
     this.link = link;
   }
+
+  /** Reads and writes login statuses field by field instead of through reflection. */
+  static final class Adapter extends TypeAdapter<LoginStatus> {
+    @Override
+    public void write(JsonWriter out, LoginStatus status) throws IOException {
+      if (status == null) {
+        out.nullValue();
+        return;
+      }
+      out.beginObject();
+      out.name("loggedIn").value(status.loggedIn);
+      out.name("userEmail").value(status.userEmail);
+      out.name("link").value(status.link);
+      out.endObject();
+    }
+
+    @Override
+    public LoginStatus read(JsonReader in) throws IOException {
+      if (in.peek() == JsonToken.NULL) {
+        in.nextNull();
+        return null;
+      }
+      boolean loggedIn = false;
+      String userEmail = null;
+      String link = null;
+      in.beginObject();
+      while (in.hasNext()) {
+        String name = in.nextName();
+        if (in.peek() == JsonToken.NULL) {
+          in.nextNull();
+          continue;
+        }
+        switch (name) {
+          case "loggedIn":
+            loggedIn = in.nextBoolean();
+            break;
+          case "userEmail":
+            userEmail = in.nextString();
+            break;
+          case "link":
+            link = in.nextString();
+            break;
+          default:
+            in.skipValue();
+        }
+      }
+      in.endObject();
+      return new LoginStatus(loggedIn, userEmail, link);
+    }
+  }
 }
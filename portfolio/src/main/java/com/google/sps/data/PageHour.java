@@ -0,0 +1,51 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+/** A page and the hour in which it was viewed, used to buffer hourly page views. */
+public final class PageHour {
+
+  private final String page;
+  private final LocalDateTime hour;
+
+  public PageHour(String page, LocalDateTime time) {
+    this.page = page;
+    this.hour = time.truncatedTo(ChronoUnit.HOURS);
+  }
+
+  public String getPage() {
+    return page;
+  }
+
+  public LocalDateTime getHour() {
+    return hour;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof PageHour
+        && page.equals(((PageHour) other).page)
+        && hour.equals(((PageHour) other).hour);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(page, hour);
+  }
+}
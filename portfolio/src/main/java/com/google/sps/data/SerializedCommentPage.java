@@ -0,0 +1,41 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.List;
+
+/**
+ * A helper class for passing a page of comments that are already serialized, one JSON object per
+ * comment, together with the cursor that resumes the next page. The cursor is null when there are
+ * no more comments.
+ */
+public final class SerializedCommentPage {
+
+  private final List<String> comments;
+  private final CommentCursor nextCursor;
+
+  public SerializedCommentPage(List<String> comments, CommentCursor nextCursor) {
+    this.comments = comments;
+    this.nextCursor = nextCursor;
+  }
+
+  public List<String> getComments() {
+    return comments;
+  }
+
+  public CommentCursor getNextCursor() {
+    return nextCursor;
+  }
+}
@@ -0,0 +1,262 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sharded counter for daily page views. Every day's count is spread over a number of shard
+ * entities, each in its own entity group, and every increment transactionally updates one shard
+ * chosen at random. Concurrent page loads therefore rarely contend on the same entity, and the
+ * count for a day is the sum over its shards. Shards are keyed by date and shard number (for
+ * example {@code Views:"2020-07-01#3"}), so any day's shards can be fetched by key.
+ *
+ * <p>The number of shards is read from the {@code sps.views.shards} system property (see
+ * appengine-web.xml). It may be raised at any time but should not be lowered while days with the
+ * higher number of shards are still being read.
+ */
+public final class ViewCounter {
+
+  private static final String SHARD_COUNT_PROPERTY = "sps.views.shards";
+  private static final int DEFAULT_SHARD_COUNT = 20;
+  private static final int MAX_TRANSACTION_ATTEMPTS = 5;
+
+  /* Datastore limits on keys per batch get and entity groups per transaction. */
+  private static final int MAX_BATCH_SIZE = 1000;
+  private static final int MAX_TRANSACTION_GROUPS = 25;
+
+  private ViewCounter() {}
+
+  /** Returns the configured number of shards per day. */
+  public static int getShardCount() {
+    return Integer.getInteger(SHARD_COUNT_PROPERTY, DEFAULT_SHARD_COUNT);
+  }
+
+  /** Adds {@code delta} views to the count for {@code date}. */
+  public static void increment(DatastoreService datastore, LocalDate date, long delta) {
+    for (int attempt = 1; ; attempt++) {
+      // A different shard is tried on every attempt so that retries do not contend again.
+      int shard = ThreadLocalRandom.current().nextInt(getShardCount());
+      Key key = getShardKey(date, shard);
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        Entity viewsEntity;
+        try {
+          viewsEntity = datastore.get(transaction, key);
+        } catch (EntityNotFoundException e) {
+          viewsEntity = newShard(key, date, shard);
+        }
+        long count = (long) viewsEntity.getProperty(ViewsEntity.COUNT_PROPERTY.getLabel());
+        viewsEntity.setProperty(ViewsEntity.COUNT_PROPERTY.getLabel(), count + delta);
+        viewsEntity.setProperty(
+            ViewsEntity.UPDATED_PROPERTY.getLabel(), System.currentTimeMillis());
+        datastore.put(transaction, viewsEntity);
+        transaction.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == MAX_TRANSACTION_ATTEMPTS) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of page views on every day from {@code start} to {@code end} (inclusive),
+   * summed over each day's shards. Shard keys are derived from the dates, so the whole range is
+   * read with strongly consistent batch gets instead of index queries. Ranges that need more than
+   * one batch get have all of them issued at once and only then wait for the results.
+   */
+  public static ViewCounts<LocalDate> getCounts(
+      AsyncDatastoreService datastore, LocalDate start, LocalDate end) {
+    Map<LocalDate, Long> counts = new LinkedHashMap<>();
+    List<Key> keys = new ArrayList<>();
+    int shardCount = getShardCount();
+    for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+      counts.put(date, 0L);
+      for (int shard = 0; shard < shardCount; shard++) {
+        keys.add(getShardKey(date, shard));
+      }
+    }
+
+    List<Future<Map<Key, Entity>>> batches = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i += MAX_BATCH_SIZE) {
+      batches.add(datastore.get(keys.subList(i, Math.min(i + MAX_BATCH_SIZE, keys.size()))));
+    }
+
+    long lastUpdated = 0;
+    for (Future<Map<Key, Entity>> batch : batches) {
+      for (Entity viewsEntity : getResult(batch).values()) {
+        LocalDate date = getDate(viewsEntity.getKey());
+        long count = (long) viewsEntity.getProperty(ViewsEntity.COUNT_PROPERTY.getLabel());
+        counts.merge(date, count, Long::sum);
+        // Shards migrated from before the counter was sharded may never have been updated.
+        Long updated = (Long) viewsEntity.getProperty(ViewsEntity.UPDATED_PROPERTY.getLabel());
+        if (updated != null) {
+          lastUpdated = Math.max(lastUpdated, updated);
+        }
+      }
+    }
+    return new ViewCounts<>(counts, lastUpdated);
+  }
+
+  private static <T> T getResult(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while reading page views", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Could not read page views", e.getCause());
+    }
+  }
+
+  /**
+   * Moves views rows written before the counter was sharded, which have auto-allocated IDs and are
+   * found by their year, month and day, into shard 0 of their day. Duplicate rows for the same day
+   * are merged. Shards written before they carried their date are stamped with it. Returns the
+   * number of rows rewritten by this call.
+   */
+  public static int migrateLegacyRows(DatastoreService datastore) {
+    Map<LocalDate, List<Entity>> legacyRows = new TreeMap<>();
+    List<Entity> undatedShards = new ArrayList<>();
+    Query query = new Query(ViewsEntity.KIND.getLabel());
+    FetchOptions fetchOptions = FetchOptions.Builder.withChunkSize(MAX_BATCH_SIZE);
+    for (Entity viewsEntity : datastore.prepare(query).asIterable(fetchOptions)) {
+      if (viewsEntity.getKey().getName() == null) {
+        LocalDate date =
+            LocalDate.of(
+                (int) (long) viewsEntity.getProperty(ViewsEntity.YEAR_PROPERTY.getLabel()),
+                (int) (long) viewsEntity.getProperty(ViewsEntity.MONTH_PROPERTY.getLabel()),
+                (int) (long) viewsEntity.getProperty(ViewsEntity.DAY_PROPERTY.getLabel()));
+        legacyRows.computeIfAbsent(date, d -> new ArrayList<>()).add(viewsEntity);
+      } else if (!viewsEntity.hasProperty(ViewsEntity.DATE_PROPERTY.getLabel())) {
+        viewsEntity.setProperty(
+            ViewsEntity.DATE_PROPERTY.getLabel(), getDate(viewsEntity.getKey()).toString());
+        undatedShards.add(viewsEntity);
+      }
+    }
+
+    for (int i = 0; i < undatedShards.size(); i += MAX_BATCH_SIZE) {
+      datastore.put(undatedShards.subList(i, Math.min(i + MAX_BATCH_SIZE, undatedShards.size())));
+    }
+    int migrated = undatedShards.size();
+    for (Map.Entry<LocalDate, List<Entity>> day : legacyRows.entrySet()) {
+      List<Entity> rows = day.getValue();
+      // Each cross-group transaction holds the day's shard and up to 24 legacy rows.
+      for (int i = 0; i < rows.size(); i += MAX_TRANSACTION_GROUPS - 1) {
+        List<Entity> chunk = rows.subList(i, Math.min(i + MAX_TRANSACTION_GROUPS - 1, rows.size()));
+        if (mergeIntoShard(datastore, day.getKey(), chunk)) {
+          migrated += chunk.size();
+        }
+      }
+    }
+    return migrated;
+  }
+
+  /**
+   * Adds the counts of {@code rows} to shard 0 of {@code date} and deletes the rows, retrying when
+   * the shard was concurrently incremented. Returns false if the rows were already merged.
+   */
+  private static boolean mergeIntoShard(
+      DatastoreService datastore, LocalDate date, List<Entity> rows) {
+    long delta = 0;
+    List<Key> rowKeys = new ArrayList<>();
+    for (Entity row : rows) {
+      delta += (long) row.getProperty(ViewsEntity.COUNT_PROPERTY.getLabel());
+      rowKeys.add(row.getKey());
+    }
+    Key key = getShardKey(date, 0);
+    for (int attempt = 1; ; attempt++) {
+      Transaction transaction = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        // Rows already merged by an earlier run or attempt are gone and must not be counted twice.
+        if (datastore.get(transaction, rowKeys).size() != rowKeys.size()) {
+          return false;
+        }
+        Entity viewsEntity;
+        try {
+          viewsEntity = datastore.get(transaction, key);
+        } catch (EntityNotFoundException e) {
+          viewsEntity = newShard(key, date, 0);
+        }
+        long count = (long) viewsEntity.getProperty(ViewsEntity.COUNT_PROPERTY.getLabel());
+        viewsEntity.setProperty(ViewsEntity.COUNT_PROPERTY.getLabel(), count + delta);
+        viewsEntity.setProperty(
+            ViewsEntity.UPDATED_PROPERTY.getLabel(), System.currentTimeMillis());
+        datastore.put(transaction, viewsEntity);
+        datastore.delete(transaction, rowKeys);
+        transaction.commit();
+        return true;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == MAX_TRANSACTION_ATTEMPTS) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  private static Entity newShard(Key key, LocalDate date, int shard) {
+    Entity viewsEntity = new Entity(key);
+    viewsEntity.setProperty(ViewsEntity.YEAR_PROPERTY.getLabel(), date.getYear());
+    viewsEntity.setProperty(ViewsEntity.MONTH_PROPERTY.getLabel(), date.getMonthValue());
+    viewsEntity.setProperty(ViewsEntity.DAY_PROPERTY.getLabel(), date.getDayOfMonth());
+    viewsEntity.setProperty(ViewsEntity.DATE_PROPERTY.getLabel(), date.toString());
+    viewsEntity.setProperty(ViewsEntity.SHARD_PROPERTY.getLabel(), shard);
+    viewsEntity.setProperty(ViewsEntity.COUNT_PROPERTY.getLabel(), 0L);
+    return viewsEntity;
+  }
+
+  /** Returns the date a shard counts views for, from its key name. */
+  private static LocalDate getDate(Key shardKey) {
+    String name = shardKey.getName();
+    return LocalDate.parse(name.substring(0, name.indexOf('#')));
+  }
+
+  /** Returns the key of a shard, named after the ISO date and the shard number. */
+  static Key getShardKey(LocalDate date, int shard) {
+    return KeyFactory.createKey(ViewsEntity.KIND.getLabel(), date + "#" + shard);
+  }
+}
@@ -0,0 +1,42 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Map;
+
+/**
+ * A helper class for passing page view counts per period together with the time the newest of the
+ * rows they were read from was last written, which serves as their version.
+ */
+public final class ViewCounts<T> {
+
+  private final Map<T, Long> counts;
+  private final long lastUpdated;
+
+  public ViewCounts(Map<T, Long> counts, long lastUpdated) {
+    this.counts = counts;
+    this.lastUpdated = lastUpdated;
+  }
+
+  /** Returns the counts in order of their periods, with zeros for periods without views. */
+  public Map<T, Long> getCounts() {
+    return counts;
+  }
+
+  /** Returns the last write time in epoch milliseconds, or 0 if no rows were read. */
+  public long getLastUpdated() {
+    return lastUpdated;
+  }
+}
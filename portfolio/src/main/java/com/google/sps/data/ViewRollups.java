@@ -0,0 +1,303 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.CompositeFilter;
+import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
+import com.google.appengine.api.datastore.Query.Filter;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.Transaction;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Page views per page rolled up by hour, day and month. Views are recorded per page and hour; a
+ * periodic rollup job compacts hours into days and days into months, so long windows can be charted
+ * from a handful of rows. Rollups are recomputed from the finer rows for the last few days on every
+ * run, which makes the job idempotent, and finer rows are only deleted once they are old enough
+ * that their day or month can no longer change.
+ */
+public final class ViewRollups {
+
+  /** The period that a rollup row counts views over. */
+  public enum Granularity {
+    HOUR("hour", "yyyy-MM-dd'T'HH", ChronoUnit.HOURS),
+    DAY("day", "yyyy-MM-dd", ChronoUnit.DAYS),
+    MONTH("month", "yyyy-MM", ChronoUnit.MONTHS);
+
+    private final String label;
+    private final DateTimeFormatter formatter;
+    private final ChronoUnit unit;
+
+    private Granularity(String label, String pattern, ChronoUnit unit) {
+      this.label = label;
+      this.formatter = DateTimeFormatter.ofPattern(pattern);
+      this.unit = unit;
+    }
+
+    /** Returns the period containing {@code time}, formatted so that periods sort in order. */
+    public String format(LocalDateTime time) {
+      return formatter.format(time);
+    }
+
+    /** Returns the start of the period containing {@code time}. */
+    public LocalDateTime truncate(LocalDateTime time) {
+      switch (this) {
+        case MONTH:
+          return time.toLocalDate().withDayOfMonth(1).atStartOfDay();
+        case DAY:
+          return time.toLocalDate().atStartOfDay();
+        case HOUR:
+        default:
+          return time.truncatedTo(ChronoUnit.HOURS);
+      }
+    }
+
+    /** Returns the start of the period after the one starting at {@code start}. */
+    public LocalDateTime next(LocalDateTime start) {
+      return start.plus(1, unit);
+    }
+  }
+
+  /* Windows of up to this many days are charted by the hour, and up to the next by the day. */
+  private static final int MAX_HOURLY_DAYS = 2;
+  private static final int MAX_DAILY_DAYS = 92;
+
+  /* Days whose rollups are recomputed on every run, covering hours flushed after midnight. */
+  private static final int RECOMPUTED_DAYS = 2;
+  private static final int HOUR_RETENTION_DAYS = 3;
+  private static final int DAY_RETENTION_DAYS = 400;
+
+  private static final int MAX_TRANSACTION_ATTEMPTS = 5;
+  private static final int MAX_BATCH_SIZE = 500;
+
+  private ViewRollups() {}
+
+  /** Returns the coarsest granularity that still charts a window of {@code days} usefully. */
+  public static Granularity getGranularity(int days) {
+    if (days <= MAX_HOURLY_DAYS) {
+      return Granularity.HOUR;
+    }
+    if (days <= MAX_DAILY_DAYS) {
+      return Granularity.DAY;
+    }
+    return Granularity.MONTH;
+  }
+
+  /** Adds {@code delta} views to the hourly row for the page and hour. */
+  public static void increment(DatastoreService datastore, PageHour pageHour, long delta) {
+    String period = Granularity.HOUR.format(pageHour.getHour());
+    Key key = getKey(pageHour.getPage(), Granularity.HOUR, period);
+    for (int attempt = 1; ; attempt++) {
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        Entity rollupEntity;
+        try {
+          rollupEntity = datastore.get(transaction, key);
+        } catch (EntityNotFoundException e) {
+          rollupEntity = newRollup(pageHour.getPage(), Granularity.HOUR, period, 0);
+        }
+        long count = (long) rollupEntity.getProperty(ViewsRollupEntity.COUNT_PROPERTY.getLabel());
+        rollupEntity.setProperty(ViewsRollupEntity.COUNT_PROPERTY.getLabel(), count + delta);
+        rollupEntity.setProperty(
+            ViewsRollupEntity.UPDATED_PROPERTY.getLabel(), System.currentTimeMillis());
+        datastore.put(transaction, rollupEntity);
+        transaction.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == MAX_TRANSACTION_ATTEMPTS) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the views of {@code page} in every period of the given granularity from the one
+   * containing {@code start} to the one containing {@code end}, read with a single query.
+   */
+  public static ViewCounts<LocalDateTime> getCounts(
+      DatastoreService datastore,
+      String page,
+      Granularity granularity,
+      LocalDateTime start,
+      LocalDateTime end) {
+    Map<String, LocalDateTime> periods = new LinkedHashMap<>();
+    for (LocalDateTime period = granularity.truncate(start);
+        !period.isAfter(end);
+        period = granularity.next(period)) {
+      periods.put(granularity.format(period), period);
+    }
+
+    Query query = new Query(ViewsRollupEntity.KIND.getLabel());
+    query.setFilter(
+        new CompositeFilter(
+            CompositeFilterOperator.AND,
+            Arrays.asList(
+                getGranularityFilter(granularity),
+                new FilterPredicate(
+                    ViewsRollupEntity.PAGE_PROPERTY.getLabel(), FilterOperator.EQUAL, page),
+                new FilterPredicate(
+                    ViewsRollupEntity.PERIOD_PROPERTY.getLabel(),
+                    FilterOperator.GREATER_THAN_OR_EQUAL,
+                    granularity.format(start)),
+                new FilterPredicate(
+                    ViewsRollupEntity.PERIOD_PROPERTY.getLabel(),
+                    FilterOperator.LESS_THAN_OR_EQUAL,
+                    granularity.format(end)))));
+    Map<String, Long> countsByPeriod = new HashMap<>();
+    long lastUpdated = 0;
+    for (Entity rollupEntity : datastore.prepare(query).asIterable()) {
+      countsByPeriod.put(
+          (String) rollupEntity.getProperty(ViewsRollupEntity.PERIOD_PROPERTY.getLabel()),
+          (long) rollupEntity.getProperty(ViewsRollupEntity.COUNT_PROPERTY.getLabel()));
+      Long updated = (Long) rollupEntity.getProperty(ViewsRollupEntity.UPDATED_PROPERTY.getLabel());
+      if (updated != null) {
+        lastUpdated = Math.max(lastUpdated, updated);
+      }
+    }
+
+    Map<LocalDateTime, Long> counts = new LinkedHashMap<>();
+    for (Map.Entry<String, LocalDateTime> period : periods.entrySet()) {
+      counts.put(period.getValue(), countsByPeriod.getOrDefault(period.getKey(), 0L));
+    }
+    return new ViewCounts<>(counts, lastUpdated);
+  }
+
+  /**
+   * Recomputes the day rows of the last few days from their hours and the month rows of the months
+   * those days fall in from their days, then deletes hour and day rows past retention.
+   */
+  public static void rollUp(DatastoreService datastore, LocalDate today) {
+    LocalDateTime firstRecomputedDay = today.minusDays(RECOMPUTED_DAYS).atStartOfDay();
+    compact(datastore, Granularity.HOUR, Granularity.DAY, firstRecomputedDay);
+    compact(
+        datastore,
+        Granularity.DAY,
+        Granularity.MONTH,
+        Granularity.MONTH.truncate(firstRecomputedDay));
+
+    deleteBefore(datastore, Granularity.HOUR, today.minusDays(HOUR_RETENTION_DAYS).atStartOfDay());
+    deleteBefore(datastore, Granularity.DAY, today.minusDays(DAY_RETENTION_DAYS).atStartOfDay());
+  }
+
+  /** Rewrites the coarse rows from {@code since} on as the sums of their fine rows. */
+  private static void compact(
+      DatastoreService datastore, Granularity fine, Granularity coarse, LocalDateTime since) {
+    Query query = new Query(ViewsRollupEntity.KIND.getLabel());
+    query.setFilter(
+        new CompositeFilter(
+            CompositeFilterOperator.AND,
+            Arrays.asList(
+                getGranularityFilter(fine),
+                new FilterPredicate(
+                    ViewsRollupEntity.PERIOD_PROPERTY.getLabel(),
+                    FilterOperator.GREATER_THAN_OR_EQUAL,
+                    fine.format(since)))));
+    // Periods of every granularity start with the period of the next coarser one.
+    int coarseLength = coarse.format(since).length();
+    Map<Key, Entity> coarseRows = new LinkedHashMap<>();
+    FetchOptions fetchOptions = FetchOptions.Builder.withChunkSize(MAX_BATCH_SIZE);
+    for (Entity fineRow : datastore.prepare(query).asIterable(fetchOptions)) {
+      String page = (String) fineRow.getProperty(ViewsRollupEntity.PAGE_PROPERTY.getLabel());
+      String finePeriod =
+          (String) fineRow.getProperty(ViewsRollupEntity.PERIOD_PROPERTY.getLabel());
+      String coarsePeriod = finePeriod.substring(0, coarseLength);
+      long count = (long) fineRow.getProperty(ViewsRollupEntity.COUNT_PROPERTY.getLabel());
+      Entity coarseRow =
+          coarseRows.computeIfAbsent(
+              getKey(page, coarse, coarsePeriod), key -> newRollup(page, coarse, coarsePeriod, 0));
+      long coarseCount = (long) coarseRow.getProperty(ViewsRollupEntity.COUNT_PROPERTY.getLabel());
+      coarseRow.setProperty(ViewsRollupEntity.COUNT_PROPERTY.getLabel(), coarseCount + count);
+    }
+    putAll(datastore, new ArrayList<>(coarseRows.values()));
+  }
+
+  /** Deletes the rows of {@code granularity} for periods before {@code cutoff}. */
+  private static void deleteBefore(
+      DatastoreService datastore, Granularity granularity, LocalDateTime cutoff) {
+    Query query = new Query(ViewsRollupEntity.KIND.getLabel()).setKeysOnly();
+    query.setFilter(
+        new CompositeFilter(
+            CompositeFilterOperator.AND,
+            Arrays.asList(
+                getGranularityFilter(granularity),
+                new FilterPredicate(
+                    ViewsRollupEntity.PERIOD_PROPERTY.getLabel(),
+                    FilterOperator.LESS_THAN,
+                    granularity.format(cutoff)))));
+    List<Key> keys = new ArrayList<>();
+    FetchOptions fetchOptions = FetchOptions.Builder.withChunkSize(MAX_BATCH_SIZE);
+    for (Entity rollupEntity : datastore.prepare(query).asIterable(fetchOptions)) {
+      keys.add(rollupEntity.getKey());
+      if (keys.size() == MAX_BATCH_SIZE) {
+        datastore.delete(keys);
+        keys.clear();
+      }
+    }
+    if (!keys.isEmpty()) {
+      datastore.delete(keys);
+    }
+  }
+
+  private static void putAll(DatastoreService datastore, List<Entity> entities) {
+    for (int i = 0; i < entities.size(); i += MAX_BATCH_SIZE) {
+      datastore.put(entities.subList(i, Math.min(i + MAX_BATCH_SIZE, entities.size())));
+    }
+  }
+
+  private static Filter getGranularityFilter(Granularity granularity) {
+    return new FilterPredicate(
+        ViewsRollupEntity.GRANULARITY_PROPERTY.getLabel(), FilterOperator.EQUAL, granularity.label);
+  }
+
+  private static Entity newRollup(String page, Granularity granularity, String period, long count) {
+    Entity rollupEntity = new Entity(getKey(page, granularity, period));
+    rollupEntity.setProperty(ViewsRollupEntity.PAGE_PROPERTY.getLabel(), page);
+    rollupEntity.setProperty(ViewsRollupEntity.GRANULARITY_PROPERTY.getLabel(), granularity.label);
+    rollupEntity.setProperty(ViewsRollupEntity.PERIOD_PROPERTY.getLabel(), period);
+    rollupEntity.setProperty(ViewsRollupEntity.COUNT_PROPERTY.getLabel(), count);
+    rollupEntity.setProperty(
+        ViewsRollupEntity.UPDATED_PROPERTY.getLabel(), System.currentTimeMillis());
+    return rollupEntity;
+  }
+
+  /** Returns the key of a rollup row, derived from its granularity, page and period. */
+  private static Key getKey(String page, Granularity granularity, String period) {
+    return KeyFactory.createKey(
+        ViewsRollupEntity.KIND.getLabel(), granularity.label + "|" + page + "|" + period);
+  }
+}
@@ -16,13 +16,15 @@ package com.google.sps.data;
 
 /**
  * Specifies the kind and property names to use for views entities (entities that store page views
- * per day) in the datastore database.
+ * per day) in the datastore database. Each day's count is split over several shard entities.
  */
 public enum ViewsEntity {
   KIND("Views"),
   YEAR_PROPERTY("year"),
   MONTH_PROPERTY("month"),
   DAY_PROPERTY("day"),
+  DATE_PROPERTY("date"),
+  SHARD_PROPERTY("shard"),
   UPDATED_PROPERTY("lastUpdated"),
   COUNT_PROPERTY("count");
 
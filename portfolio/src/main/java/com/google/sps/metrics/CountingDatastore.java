@@ -0,0 +1,215 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.PreparedQuery;
+import com.google.sps.metrics.RequestMetrics.Call;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decorates datastore clients so that every get, put, delete and query, and every entity read or
+ * written, is counted in {@link RequestMetrics} for the request that made it. The clients have
+ * dozens of overloads, so the decorators are dynamic proxies that look at the method name and the
+ * arguments instead of implementing each overload.
+ *
+ * <p>Entities read are counted as query results are iterated; lists of results are counted by their
+ * size, which reads them completely. Entities read by asynchronous gets are counted when their
+ * results are waited for.
+ */
+public final class CountingDatastore {
+
+  private CountingDatastore() {}
+
+  public static DatastoreService wrap(DatastoreService datastore) {
+    return proxy(DatastoreService.class, new ServiceHandler(datastore));
+  }
+
+  public static AsyncDatastoreService wrap(AsyncDatastoreService datastore) {
+    return proxy(AsyncDatastoreService.class, new ServiceHandler(datastore));
+  }
+
+  private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+    return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+  }
+
+  private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Counts the calls on a datastore client. */
+  private static final class ServiceHandler implements InvocationHandler {
+    private final Object datastore;
+
+    private ServiceHandler(Object datastore) {
+      this.datastore = datastore;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      RequestMetrics metrics = RequestMetrics.getInstance();
+      Object result = CountingDatastore.invoke(datastore, method, args);
+      switch (method.getName()) {
+        case "get":
+          metrics.countCall(Call.GET);
+          if (result instanceof Future) {
+            return proxy(Future.class, new FutureHandler((Future<?>) result));
+          }
+          countEntitiesRead(result);
+          break;
+        case "put":
+          metrics.countCall(Call.PUT);
+          metrics.countEntitiesWritten(countEntities(args));
+          break;
+        case "delete":
+          metrics.countCall(Call.DELETE);
+          metrics.countEntitiesWritten(countEntities(args));
+          break;
+        case "prepare":
+          metrics.countCall(Call.QUERY);
+          return proxy(PreparedQuery.class, new QueryHandler((PreparedQuery) result));
+        default:
+          break;
+      }
+      return result;
+    }
+
+    /**
+     * Returns how many entities or keys are passed to a put or delete. Iterables that are not
+     * collections may only be iterable once and are not counted.
+     */
+    private static long countEntities(Object[] args) {
+      long count = 0;
+      for (Object arg : args) {
+        if (arg instanceof Entity || arg instanceof Key) {
+          count++;
+        } else if (arg instanceof Key[]) {
+          count += ((Key[]) arg).length;
+        } else if (arg instanceof Collection) {
+          count += ((Collection<?>) arg).size();
+        }
+      }
+      return count;
+    }
+  }
+
+  private static void countEntitiesRead(Object result) {
+    if (result instanceof Entity) {
+      RequestMetrics.getInstance().countEntitiesRead(1);
+    } else if (result instanceof Map) {
+      RequestMetrics.getInstance().countEntitiesRead(((Map<?, ?>) result).size());
+    }
+  }
+
+  /**
+   * Counts the entities an asynchronous get returns once they are waited for, by the request that
+   * waits for them.
+   */
+  private static final class FutureHandler implements InvocationHandler {
+    private final Future<?> future;
+    private final AtomicBoolean counted = new AtomicBoolean();
+
+    private FutureHandler(Future<?> future) {
+      this.future = future;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result = CountingDatastore.invoke(future, method, args);
+      if (method.getName().equals("get") && counted.compareAndSet(false, true)) {
+        countEntitiesRead(result);
+      }
+      return result;
+    }
+  }
+
+  /** Counts the entities a prepared query returns. */
+  private static final class QueryHandler implements InvocationHandler {
+    private final PreparedQuery query;
+
+    private QueryHandler(PreparedQuery query) {
+      this.query = query;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result = CountingDatastore.invoke(query, method, args);
+      Class<?> type = method.getReturnType();
+      if (result instanceof Entity) {
+        RequestMetrics.getInstance().countEntitiesRead(1);
+      } else if (result instanceof List) {
+        RequestMetrics.getInstance().countEntitiesRead(((List<?>) result).size());
+      } else if (result instanceof Iterator && type.isInterface()) {
+        return proxy(type, new IteratorHandler(result));
+      } else if (result instanceof Iterable && type.isInterface()) {
+        return proxy(type, new IterableHandler(result));
+      }
+      return result;
+    }
+  }
+
+  /** Counts the entities handed out by the iterators of query results. */
+  private static final class IterableHandler implements InvocationHandler {
+    private final Object iterable;
+
+    private IterableHandler(Object iterable) {
+      this.iterable = iterable;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result = CountingDatastore.invoke(iterable, method, args);
+      Class<?> type = method.getReturnType();
+      if (method.getName().equals("iterator") && type.isInterface()) {
+        return proxy(type, new IteratorHandler(result));
+      }
+      return result;
+    }
+  }
+
+  /** Counts every entity an iterator of query results hands out. */
+  private static final class IteratorHandler implements InvocationHandler {
+    private final Object iterator;
+
+    private IteratorHandler(Object iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      Object result = CountingDatastore.invoke(iterator, method, args);
+      if (method.getName().equals("next")) {
+        RequestMetrics.getInstance().countEntitiesRead(1);
+      }
+      return result;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in microseconds with log-linear buckets, in the manner of an HDR
+ * histogram: every power of two is split into four equal buckets, so any recorded value is off by
+ * at most a quarter of its power of two. Durations from 1 microsecond to about 134 seconds are told
+ * apart; longer ones all fall into the last bucket.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 27;
+  private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sumMicros = new LongAdder();
+
+  public void record(long micros) {
+    long value = Math.max(0, micros);
+    counts.incrementAndGet(getBucket(value));
+    count.increment();
+    sumMicros.add(value);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getSumMicros() {
+    return sumMicros.sum();
+  }
+
+  /** Returns the number of buckets, the last of which is unbounded. */
+  public int getBucketCount() {
+    return BUCKETS;
+  }
+
+  /** Returns the number of values recorded in the bucket. */
+  public long getBucketCount(int bucket) {
+    return counts.get(bucket);
+  }
+
+  /** Returns the exclusive upper bound of the bucket in microseconds. */
+  public long getUpperBoundMicros(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket + 1;
+    }
+    int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+    int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    return (long) (SUB_BUCKETS + subBucket + 1) << shift;
+  }
+
+  private static int getBucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    if (exponent >= MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >> shift) - SUB_BUCKETS;
+    return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+  }
+}
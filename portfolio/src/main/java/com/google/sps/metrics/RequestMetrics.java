@@ -0,0 +1,189 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.metrics;
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-endpoint request metrics of this instance: a latency histogram and datastore call counters
+ * for every servlet path. The endpoint of the request being handled is tracked per thread, so that
+ * datastore calls made anywhere while handling it are attributed to it.
+ */
+public final class RequestMetrics {
+
+  /** Endpoint that datastore calls outside of a tracked request are attributed to. */
+  public static final String OTHER_PATH = "other";
+
+  private static final RequestMetrics INSTANCE = new RequestMetrics();
+
+  private final ConcurrentMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+  private final ThreadLocal<Endpoint> current = new ThreadLocal<>();
+
+  private RequestMetrics() {}
+
+  public static RequestMetrics getInstance() {
+    return INSTANCE;
+  }
+
+  /** Datastore calls that are counted separately. */
+  public enum Call {
+    GET("get"),
+    PUT("put"),
+    DELETE("delete"),
+    QUERY("query");
+
+    private final String label;
+
+    private Call(String label) {
+      this.label = label;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+  }
+
+  /** Metrics of one servlet path. */
+  public static final class Endpoint {
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<Call, LongAdder> calls = new ConcurrentHashMap<>();
+    private final LongAdder entitiesRead = new LongAdder();
+    private final LongAdder entitiesWritten = new LongAdder();
+
+    private Endpoint() {
+      for (Call call : Call.values()) {
+        calls.put(call, new LongAdder());
+      }
+    }
+
+    public LatencyHistogram getLatency() {
+      return latency;
+    }
+  }
+
+  /** Returns the metrics of the endpoint, creating them on first use. */
+  public Endpoint getEndpoint(String path) {
+    return endpoints.computeIfAbsent(path, p -> new Endpoint());
+  }
+
+  /** Attributes datastore calls on this thread to {@code endpoint} until {@link #end()}. */
+  public void begin(Endpoint endpoint) {
+    current.set(endpoint);
+  }
+
+  public void end() {
+    current.remove();
+  }
+
+  /** Counts a datastore call by the current request. */
+  public void countCall(Call call) {
+    getCurrent().calls.get(call).increment();
+  }
+
+  /** Counts entities returned by the datastore to the current request. */
+  public void countEntitiesRead(long entities) {
+    getCurrent().entitiesRead.add(entities);
+  }
+
+  /** Counts entities put or deleted by the current request. */
+  public void countEntitiesWritten(long entities) {
+    getCurrent().entitiesWritten.add(entities);
+  }
+
+  /** Writes all metrics in the Prometheus text exposition format. */
+  public void writePrometheus(PrintWriter out) {
+    Map<String, Endpoint> sorted = new TreeMap<>(endpoints);
+
+    out.println("# HELP sps_request_duration_seconds Time spent handling requests.");
+    out.println("# TYPE sps_request_duration_seconds histogram");
+    for (Map.Entry<String, Endpoint> endpoint : sorted.entrySet()) {
+      LatencyHistogram latency = endpoint.getValue().latency;
+      if (latency.getCount() == 0) {
+        continue;
+      }
+      String labels = "path=\"" + escape(endpoint.getKey()) + "\"";
+      // Buckets above the highest one in use are left out; they would all repeat the total.
+      int highest = 0;
+      for (int bucket = 0; bucket < latency.getBucketCount(); bucket++) {
+        if (latency.getBucketCount(bucket) > 0) {
+          highest = bucket;
+        }
+      }
+      long cumulative = 0;
+      for (int bucket = 0; bucket <= highest && bucket < latency.getBucketCount() - 1; bucket++) {
+        cumulative += latency.getBucketCount(bucket);
+        double le = latency.getUpperBoundMicros(bucket) / 1e6;
+        out.println(
+            "sps_request_duration_seconds_bucket{" + labels + ",le=\"" + le + "\"} " + cumulative);
+      }
+      long count = latency.getCount();
+      out.println("sps_request_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} " + count);
+      out.println(
+          "sps_request_duration_seconds_sum{" + labels + "} " + latency.getSumMicros() / 1e6);
+      out.println("sps_request_duration_seconds_count{" + labels + "} " + count);
+    }
+
+    out.println("# HELP sps_datastore_calls_total Datastore calls made while handling requests.");
+    out.println("# TYPE sps_datastore_calls_total counter");
+    for (Map.Entry<String, Endpoint> endpoint : sorted.entrySet()) {
+      for (Call call : Call.values()) {
+        long calls = endpoint.getValue().calls.get(call).sum();
+        if (calls > 0) {
+          out.println(
+              "sps_datastore_calls_total{path=\""
+                  + escape(endpoint.getKey())
+                  + "\",call=\""
+                  + call.getLabel()
+                  + "\"} "
+                  + calls);
+        }
+      }
+    }
+
+    out.println("# HELP sps_datastore_entities_read_total Entities returned by gets and queries.");
+    out.println("# TYPE sps_datastore_entities_read_total counter");
+    for (Map.Entry<String, Endpoint> endpoint : sorted.entrySet()) {
+      out.println(
+          "sps_datastore_entities_read_total{path=\""
+              + escape(endpoint.getKey())
+              + "\"} "
+              + endpoint.getValue().entitiesRead.sum());
+    }
+
+    out.println("# HELP sps_datastore_entities_written_total Entities put or deleted.");
+    out.println("# TYPE sps_datastore_entities_written_total counter");
+    for (Map.Entry<String, Endpoint> endpoint : sorted.entrySet()) {
+      out.println(
+          "sps_datastore_entities_written_total{path=\""
+              + escape(endpoint.getKey())
+              + "\"} "
+              + endpoint.getValue().entitiesWritten.sum());
+    }
+  }
+
+  private Endpoint getCurrent() {
+    Endpoint endpoint = current.get();
+    return endpoint != null ? endpoint : getEndpoint(OTHER_PATH);
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+}
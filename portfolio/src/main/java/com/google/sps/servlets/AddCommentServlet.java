@@ -14,10 +14,8 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.sps.data.CommentEntity;
+import com.google.sps.data.Comment;
+import com.google.sps.data.CommentCache;
 import com.google.sps.data.Constants;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
@@ -33,7 +31,6 @@ public class AddCommentServlet extends HttpServlet {
   private static final String EMAIL_FORM_NAME = "email-input";
   private static final String USER_FORM_NAME = "username-input";
   private static final String MOOD_FORM_NAME = "select-mood";
-  private static final int MAX_COMMENT_LENGHT = 500;
 
   /** Saves comments entered in the comment form in the datastore database. */
   @Override
@@ -44,15 +41,11 @@ public class AddCommentServlet extends HttpServlet {
     String mood = getParameter(request, MOOD_FORM_NAME, "");
     long time = System.currentTimeMillis();
 
-    if (!comment.isEmpty() && !(comment.length() > MAX_COMMENT_LENGHT) && !email.isEmpty()) {
-      Entity commentEntity = new Entity(CommentEntity.KIND.getLabel());
-      commentEntity.setProperty(CommentEntity.CONTENT_PROPERTY.getLabel(), comment);
-      commentEntity.setProperty(CommentEntity.EMAIL_PROPERTY.getLabel(), email);
-      commentEntity.setProperty(CommentEntity.USERNAME_PROPERTY.getLabel(), user);
-      commentEntity.setProperty(CommentEntity.TIME_PROPERTY.getLabel(), time);
-      commentEntity.setProperty(CommentEntity.MOOD_PROPERTY.getLabel(), mood);
-      DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-      datastore.put(commentEntity);
+    if (CommentInput.validate(comment, email) == null) {
+      Services services = Services.get(getServletContext());
+      Comment added = services.getComments().add(new Comment(0, comment, email, user, time, mood));
+      CommentCache.getInstance().invalidate();
+      services.getCommentEvents().publishAdded(added);
     }
   }
 
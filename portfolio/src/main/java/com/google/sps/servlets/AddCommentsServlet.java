@@ -0,0 +1,164 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.sps.data.Comment;
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.CommentRepository;
+import com.google.sps.data.Constants;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet for importing many comments at once. The request body is a JSON array of comments, for
+ * example {@code [{"content": "Hi", "email": "a@b.c", "username": "A", "mood": "😀", "time":
+ * 1593561600000}]}, where only the content and email are required. The array is read as a stream
+ * and valid comments are written in chunks with one batch put each, so imports of any size take one
+ * request and a few RPCs per chunk.
+ */
+@WebServlet("/add-comments")
+public class AddCommentsServlet extends HttpServlet {
+
+  /* Comments written per call to the repository, the datastore limit on entities per put. */
+  private static final int MAX_BATCH_SIZE = 500;
+
+  /**
+   * Validates and saves the comments in the request body and returns the result for every comment
+   * in order: its new ID, or why it was rejected or could not be written.
+   */
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!AdminAccess.isAllowed(request)) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    CommentRepository comments = Services.get(getServletContext()).getComments();
+    Gson gson = Services.get(getServletContext()).getGson();
+    ImportReport report = new ImportReport();
+    List<Comment> batch = new ArrayList<>();
+    List<Result> batchResults = new ArrayList<>();
+    int status = HttpServletResponse.SC_OK;
+    try (JsonReader reader = new JsonReader(request.getReader())) {
+      reader.beginArray();
+      for (int index = 0; reader.hasNext(); index++) {
+        Result result = new Result(index);
+        report.results.add(result);
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+          reader.skipValue();
+          result.error = "Not a comment object";
+          report.failed++;
+          continue;
+        }
+        ImportedComment comment = gson.fromJson(reader, ImportedComment.class);
+        result.error = CommentInput.validate(comment.content, comment.email);
+        if (result.error != null) {
+          report.failed++;
+          continue;
+        }
+        batch.add(
+            new Comment(
+                0,
+                comment.content,
+                comment.email,
+                isEmpty(comment.username) ? Constants.DEFAULT_USERNAME : comment.username,
+                comment.time != null ? comment.time : System.currentTimeMillis(),
+                comment.mood != null ? comment.mood : ""));
+        batchResults.add(result);
+        if (batch.size() == MAX_BATCH_SIZE) {
+          putBatch(comments, batch, batchResults, report);
+        }
+      }
+      reader.endArray();
+    } catch (IOException | JsonParseException | IllegalStateException e) {
+      // Comments before the malformed part are still written and reported.
+      status = HttpServletResponse.SC_BAD_REQUEST;
+      report.error = "Malformed comment array: " + e.getMessage();
+    }
+    if (!batch.isEmpty()) {
+      putBatch(comments, batch, batchResults, report);
+    }
+    if (report.added > 0) {
+      CommentCache.getInstance().invalidate();
+      // Imported comments may be older than the ones live subscribers show, so they reload.
+      Services.get(getServletContext()).getCommentEvents().publishReset();
+    }
+
+    response.setStatus(status);
+    response.setContentType("application/json;");
+    response.setCharacterEncoding("UTF-8");
+    gson.toJson(report, response.getWriter());
+  }
+
+  /** Writes a chunk of comments with a single put, records their IDs and clears the chunk. */
+  private static void putBatch(
+      CommentRepository comments, List<Comment> batch, List<Result> results, ImportReport report) {
+    try {
+      List<Comment> added = comments.addAll(batch);
+      for (int i = 0; i < added.size(); i++) {
+        results.get(i).id = added.get(i).getId();
+      }
+      report.added += batch.size();
+    } catch (RuntimeException e) {
+      for (Result result : results) {
+        result.error = "Could not be written: " + e.getMessage();
+      }
+      report.failed += batch.size();
+    }
+    batch.clear();
+    results.clear();
+  }
+
+  private static boolean isEmpty(String value) {
+    return value == null || value.isEmpty();
+  }
+
+  /** A comment in the request body. */
+  private static final class ImportedComment {
+    private String content;
+    private String email;
+    private String username;
+    private String mood;
+    private Long time;
+  }
+
+  /** The response body, listing the result of every comment in the request. */
+  private static final class ImportReport {
+    private int added;
+    private int failed;
+    private String error;
+    private final List<Result> results = new ArrayList<>();
+  }
+
+  /** The result of one comment: its ID once written, otherwise why it was not. */
+  private static final class Result {
+    private final int index;
+    private Long id;
+    private String error;
+
+    private Result(int index) {
+      this.index = index;
+    }
+  }
+}
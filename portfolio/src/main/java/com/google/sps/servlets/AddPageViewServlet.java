@@ -15,19 +15,18 @@
 package com.google.sps.servlets;
 
 import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.CompositeFilter;
-import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
-import com.google.appengine.api.datastore.Query.FilterOperator;
-import com.google.appengine.api.datastore.Query.FilterPredicate;
-import com.google.sps.data.ViewsEntity;
+import com.google.sps.data.CountBuffer;
+import com.google.sps.data.PageHour;
+import com.google.sps.data.ViewCounter;
+import com.google.sps.data.ViewRollups;
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -37,41 +36,100 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/add-page-view")
 public class AddPageViewServlet extends HttpServlet {
 
-  /** Stores page view count in views entity for current day. */
+  private static final String PAGE_PARAMETER = "page";
+  private static final String DEFAULT_PAGE = "/index.html";
+  /* Only paths of the portfolio's html pages are counted so clients cannot create arbitrary rows. */
+  private static final Pattern PAGE_PATTERN = Pattern.compile("/[a-z0-9_-]{1,40}\\.html");
+
+  private static final long FLUSH_INTERVAL_MILLIS = 30 * 1000;
+  private static final long FLUSH_THRESHOLD = 500;
+
+  /* Page views per day that have not been written to the sharded counters yet. */
+  private final CountBuffer<LocalDate> views =
+      new CountBuffer<>(FLUSH_INTERVAL_MILLIS, FLUSH_THRESHOLD);
+
+  /* Page views per page and hour that have not been written to the hourly rollups yet. */
+  private final CountBuffer<PageHour> pageViews =
+      new CountBuffer<>(FLUSH_INTERVAL_MILLIS, FLUSH_THRESHOLD);
+
+  /**
+   * Counts a page view for the viewed page in the current hour and, for the index page, which the
+   * daily page view chart has always counted alone, also for the current day. Views are buffered in
+   * memory and written to the sharded counters and hourly rollups in batches. The view is counted
+   * even if the batch it happens to trigger fails to be written; those views stay buffered for the
+   * next batch.
+   */
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String page = request.getParameter(PAGE_PARAMETER);
+    if (page == null || page.isEmpty() || page.equals("/")) {
+      page = DEFAULT_PAGE;
+    }
+    if (!PAGE_PATTERN.matcher(page).matches()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown page");
+      return;
+    }
+
     Date date = new Date();
-    LocalDate localDate = date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-    int year = localDate.getYear();
-    int month = localDate.getMonthValue();
-    int day = localDate.getDayOfMonth();
-    long lastUpdated = System.currentTimeMillis();
+    LocalDateTime localDateTime = date.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime();
+    if (page.equals(DEFAULT_PAGE)) {
+      views.increment(localDateTime.toLocalDate());
+    }
+    pageViews.increment(new PageHour(page, localDateTime));
+    if (views.isFlushDue() || pageViews.isFlushDue()) {
+      try {
+        flush(localDateTime, false);
+      } catch (RuntimeException e) {
+        log("Could not write buffered page views", e);
+      }
+    }
+  }
 
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = new Query(ViewsEntity.KIND.getLabel());
-    query.setFilter(
-        new CompositeFilter(
-            CompositeFilterOperator.AND,
-            Arrays.asList(
-                new FilterPredicate(
-                    ViewsEntity.YEAR_PROPERTY.getLabel(), FilterOperator.EQUAL, year),
-                new FilterPredicate(
-                    ViewsEntity.MONTH_PROPERTY.getLabel(), FilterOperator.EQUAL, month),
-                new FilterPredicate(
-                    ViewsEntity.DAY_PROPERTY.getLabel(), FilterOperator.EQUAL, day))));
-    Entity viewsEntity = datastore.prepare(query).asSingleEntity();
+  /** Writes the views buffered on this instance before it shuts down. */
+  @Override
+  public void destroy() {
+    Date date = new Date();
+    flush(date.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime(), true);
+  }
 
-    if (viewsEntity == null) {
-      viewsEntity = new Entity(ViewsEntity.KIND.getLabel());
-      viewsEntity.setProperty(ViewsEntity.YEAR_PROPERTY.getLabel(), year);
-      viewsEntity.setProperty(ViewsEntity.MONTH_PROPERTY.getLabel(), month);
-      viewsEntity.setProperty(ViewsEntity.DAY_PROPERTY.getLabel(), day);
-      viewsEntity.setProperty(ViewsEntity.COUNT_PROPERTY.getLabel(), 1);
+  /**
+   * Writes the buffered views. Unless {@code wait} is true, buffers that another request is already
+   * flushing are skipped.
+   */
+  private void flush(LocalDateTime now, boolean wait) {
+    DatastoreService datastore = Services.get(getServletContext()).getDatastore();
+    CountBuffer.Sink<LocalDate> viewSink =
+        (day, delta) -> ViewCounter.increment(datastore, day, delta);
+    CountBuffer.Sink<PageHour> pageViewSink =
+        (pageHour, delta) -> ViewRollups.increment(datastore, pageHour, delta);
+    if (wait) {
+      views.flush(viewSink);
+      pageViews.flush(pageViewSink);
     } else {
-      long count = (long) (viewsEntity.getProperty(ViewsEntity.COUNT_PROPERTY.getLabel()));
-      viewsEntity.setProperty(ViewsEntity.COUNT_PROPERTY.getLabel(), count + 1);
+      views.tryFlush(viewSink);
+      pageViews.tryFlush(pageViewSink);
+    }
+
+    // Periods before the previous one can no longer receive views, so their counters can be
+    // dropped.
+    LocalDate today = now.toLocalDate();
+    List<LocalDate> pastDays = new ArrayList<>();
+    for (LocalDate day : views.keys()) {
+      if (day.isBefore(today.minusDays(1))) {
+        pastDays.add(day);
+      }
+    }
+    for (LocalDate day : pastDays) {
+      views.retire(day);
+    }
+    List<PageHour> pastHours = new ArrayList<>();
+    for (PageHour pageHour : pageViews.keys()) {
+      if (pageHour.getHour().isBefore(now.minusHours(2))) {
+        pastHours.add(pageHour);
+      }
+    }
+    for (PageHour pageHour : pastHours) {
+      pageViews.retire(pageHour);
     }
-    viewsEntity.setProperty(ViewsEntity.UPDATED_PROPERTY.getLabel(), lastUpdated);
-    datastore.put(viewsEntity);
   }
 }
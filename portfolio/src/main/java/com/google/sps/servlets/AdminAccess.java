@@ -0,0 +1,37 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import javax.servlet.http.HttpServletRequest;
+
+/** Checks access to maintenance endpoints that only cron jobs and admins may call. */
+final class AdminAccess {
+
+  /* Set by App Engine on cron requests and stripped from all external requests. */
+  private static final String CRON_HEADER = "X-Appengine-Cron";
+
+  private AdminAccess() {}
+
+  /** Returns true if the request comes from the cron service or a signed in app admin. */
+  static boolean isAllowed(HttpServletRequest request) {
+    if ("true".equals(request.getHeader(CRON_HEADER))) {
+      return true;
+    }
+    UserService userService = UserServiceFactory.getUserService();
+    return userService.isUserLoggedIn() && userService.isUserAdmin();
+  }
+}
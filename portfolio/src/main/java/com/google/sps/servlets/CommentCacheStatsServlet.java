@@ -0,0 +1,45 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.JsonSupport;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Servlet for reporting how well this instance's comment cache is doing. */
+@WebServlet("/comment-cache-stats")
+public class CommentCacheStatsServlet extends HttpServlet {
+
+  /** Returns the hit and miss counts and the current size of the comment cache. */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    CommentCache cache = CommentCache.getInstance();
+    LinkedHashMap<String, Long> data = new LinkedHashMap<>();
+    data.put("hits", cache.getHitCount());
+    data.put("misses", cache.getMissCount());
+    data.put("size", (long) cache.size());
+
+    response.setContentType("application/json;");
+    response.setCharacterEncoding("UTF-8");
+    Gson gson = Services.get(getServletContext()).getGson();
+    gson.toJson(data, JsonSupport.COUNTS_TYPE, response.getWriter());
+  }
+}
@@ -0,0 +1,37 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+/** Validation rules shared by the servlets that add comments. */
+final class CommentInput {
+
+  static final int MAX_COMMENT_LENGHT = 500;
+
+  private CommentInput() {}
+
+  /** Returns why a comment with the given content and email is rejected, or null if it is valid. */
+  static String validate(String comment, String email) {
+    if (comment == null || comment.isEmpty()) {
+      return "Comment is empty";
+    }
+    if (comment.length() > MAX_COMMENT_LENGHT) {
+      return "Comment is longer than " + MAX_COMMENT_LENGHT + " characters";
+    }
+    if (email == null || email.isEmpty()) {
+      return "Email is empty";
+    }
+    return null;
+  }
+}
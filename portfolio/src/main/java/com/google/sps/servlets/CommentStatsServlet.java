@@ -14,16 +14,12 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
 import com.google.gson.Gson;
-import com.google.sps.data.CommentEntity;
-import com.google.sps.data.Constants;
+import com.google.sps.data.CommentStats;
+import com.google.sps.data.JsonSupport;
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.Map;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -36,36 +32,27 @@ public class CommentStatsServlet extends HttpServlet {
   private static final String COMMENT_COUNT_DATA_LABEL = "commentCount";
   private static final String MOOD_COUNT_DATA_LABEL = "moodCount";
 
-  /** Loads comments from the datastore database and accumulates some data about them. */
+  /**
+   * Loads the aggregated comment stats, which the datastore builds from all comments the first
+   * time. Clients that already hold the current stats get an empty 304 response.
+   */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    HashMap<String, Integer> commentCount = new HashMap<>();
-    HashMap<String, Integer> moodCount = new HashMap<>();
-
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = new Query(CommentEntity.KIND.getLabel());
-    PreparedQuery results = datastore.prepare(query);
-
-    int numberOfComments = 0;
-    int numberOfAnonymousComments = 0;
-    for (Entity entity : results.asIterable()) {
-      numberOfComments++;
-      String username = (String) entity.getProperty(CommentEntity.USERNAME_PROPERTY.getLabel());
-      if (username.equals(Constants.DEFAULT_USERNAME)) {
-        numberOfAnonymousComments++;
-      }
-      String mood = (String) entity.getProperty(CommentEntity.MOOD_PROPERTY.getLabel());
-      moodCount.put(mood, moodCount.getOrDefault(mood, 0) + 1);
+    CommentStats stats = Services.get(getServletContext()).getComments().getStats();
+    if (ConditionalGet.isNotModified(request, response, stats.getLastUpdated())) {
+      return;
     }
-    commentCount.put("total", numberOfComments);
-    commentCount.put("anonymousTotal", numberOfAnonymousComments);
 
-    HashMap<String, HashMap<String, Integer>> data = new HashMap<>();
+    HashMap<String, Long> commentCount = new HashMap<>();
+    commentCount.put("total", stats.getTotal());
+    commentCount.put("anonymousTotal", stats.getAnonymousTotal());
+
+    HashMap<String, Map<String, Long>> data = new HashMap<>();
     data.put(COMMENT_COUNT_DATA_LABEL, commentCount);
-    data.put(MOOD_COUNT_DATA_LABEL, moodCount);
+    data.put(MOOD_COUNT_DATA_LABEL, stats.getMoodCount());
     response.setContentType("application/json;");
     response.setCharacterEncoding("UTF-8");
-    Gson gson = new Gson();
-    response.getWriter().println(gson.toJson(data));
+    Gson gson = Services.get(getServletContext()).getGson();
+    gson.toJson(data, JsonSupport.GROUPED_COUNTS_TYPE, response.getWriter());
   }
 }
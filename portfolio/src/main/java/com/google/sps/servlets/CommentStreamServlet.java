@@ -0,0 +1,164 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.data.Comment;
+import com.google.sps.data.CommentEvent;
+import com.google.sps.data.CommentEventBus;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Server-sent events stream of changes to the comment feed (see {@link CommentEventBus}). Streams
+ * are asynchronous, so an idle subscriber holds no request thread. Every stream is closed after a
+ * fixed time to stay within the request deadline; browsers then reconnect on their own and resume
+ * from the {@code Last-Event-ID} they send.
+ *
+ * <p>The App Engine standard front end buffers whole responses, so in production this is a long
+ * poll rather than a push: the events of a stream reach the browser together when it closes, up to
+ * 50 seconds after they happened. Only the development server delivers them live.
+ */
+@WebServlet(urlPatterns = "/comments/stream", asyncSupported = true)
+public class CommentStreamServlet extends HttpServlet {
+
+  private static final long STREAM_MILLIS = 50 * 1000;
+  private static final long RETRY_MILLIS = 3 * 1000;
+  private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+  /** Opens a stream and resumes it after the last event the client saw, if it sent one. */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    PrintWriter writer = response.getWriter();
+    writer.print("retry: " + RETRY_MILLIS + "\n\n");
+    writer.flush();
+
+    Services services = Services.get(getServletContext());
+    AsyncContext async = request.startAsync();
+    async.setTimeout(STREAM_MILLIS);
+    Stream stream = new Stream(async, writer, services.getGson(), services.getCommentEvents());
+    async.addListener(stream);
+    services.getCommentEvents().subscribe(stream, request.getHeader(LAST_EVENT_ID_HEADER));
+  }
+
+  /** One open stream, written to by the bus and closed by the container. */
+  private static final class Stream implements CommentEventBus.Subscriber, AsyncListener {
+    private final AsyncContext async;
+    private final PrintWriter writer;
+    private final Gson gson;
+    private final CommentEventBus events;
+    private boolean closed;
+
+    private Stream(AsyncContext async, PrintWriter writer, Gson gson, CommentEventBus events) {
+      this.async = async;
+      this.writer = writer;
+      this.gson = gson;
+      this.events = events;
+    }
+
+    @Override
+    public synchronized boolean onEvent(CommentEvent event) {
+      if (closed) {
+        return false;
+      }
+      String data;
+      switch (event.getType()) {
+        case ADDED:
+          data = gson.toJson(event.getComment(), Comment.class);
+          break;
+        case DELETED:
+          data = "{\"id\":" + event.getCommentId() + "}";
+          break;
+        case RESET:
+        default:
+          data = "{}";
+      }
+      // Serialized JSON has no line breaks, so it always fits into a single data line.
+      writer.print("id: " + event.getId() + "\nevent: " + event.getType().getLabel());
+      writer.print("\ndata: " + data + "\n\n");
+      return flush();
+    }
+
+    @Override
+    public synchronized boolean onHeartbeat(String lastEventId) {
+      if (closed) {
+        return false;
+      }
+      // An ID without data dispatches no event, but it is what the client resumes from when it
+      // reconnects, so no event published in between is lost.
+      writer.print("id: " + lastEventId + "\n\n");
+      return flush();
+    }
+
+    /** Sends what was written and returns false if the client has gone away. */
+    private boolean flush() {
+      writer.flush();
+      if (writer.checkError()) {
+        close();
+        return false;
+      }
+      return true;
+    }
+
+    private void close() {
+      closed = true;
+      try {
+        async.complete();
+      } catch (IllegalStateException e) {
+        // The container already completed the request.
+      }
+    }
+
+    // The bus calls streams while holding its lock, so streams call the bus without holding theirs.
+
+    /** Ends the stream with the ID of the last event, which the client resumes from. */
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      events.unsubscribe(this);
+      synchronized (this) {
+        close();
+      }
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      synchronized (this) {
+        close();
+      }
+      events.unsubscribe(this);
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      synchronized (this) {
+        closed = true;
+      }
+      events.unsubscribe(this);
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+  }
+}
@@ -0,0 +1,80 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.compression.CompressingResponse;
+import com.google.sps.compression.ContentEncoding;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Compresses the responses of the data endpoints with gzip or deflate, whichever the client prefers
+ * (see {@link CompressingResponse}). Bodies smaller than the {@code sps.compression.threshold}
+ * system property, in bytes, are sent uncompressed.
+ */
+@WebFilter({"/comments", "/comment-stats", "/page-view-stats", "/user", "/metrics"})
+public class CompressionFilter implements Filter {
+
+  private static final String THRESHOLD_PROPERTY = "sps.compression.threshold";
+  private static final int DEFAULT_THRESHOLD = 1024;
+
+  private static final Set<String> COMPRESSIBLE_TYPES =
+      Collections.unmodifiableSet(new HashSet<>(Arrays.asList("application/json", "text/plain")));
+
+  private int threshold;
+
+  @Override
+  public void init(FilterConfig config) {
+    threshold = Integer.getInteger(THRESHOLD_PROPERTY, DEFAULT_THRESHOLD);
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    HttpServletResponse httpResponse = (HttpServletResponse) response;
+    // Caches must not hand a compressed response to a client that did not ask for one.
+    httpResponse.addHeader("Vary", "Accept-Encoding");
+    ContentEncoding encoding =
+        ContentEncoding.negotiate(((HttpServletRequest) request).getHeader("Accept-Encoding"));
+    if (encoding == null) {
+      chain.doFilter(request, response);
+      return;
+    }
+    CompressingResponse compressingResponse =
+        new CompressingResponse(httpResponse, encoding, threshold, COMPRESSIBLE_TYPES);
+    try {
+      chain.doFilter(request, compressingResponse);
+      compressingResponse.finish();
+    } finally {
+      // Deflaters hold native memory, so a failed response must not keep its deflater.
+      compressingResponse.discard();
+    }
+  }
+
+  @Override
+  public void destroy() {}
+}
@@ -0,0 +1,89 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Answers conditional GET requests from a cheap version stamp of the data a response is built from,
+ * so that clients holding the current version get an empty 304 instead of the full body.
+ */
+final class ConditionalGet {
+
+  private static final String ETAG_HEADER = "ETag";
+  private static final String LAST_MODIFIED_HEADER = "Last-Modified";
+  private static final String CACHE_CONTROL_HEADER = "Cache-Control";
+  private static final String IF_NONE_MATCH_HEADER = "If-None-Match";
+  private static final String IF_MODIFIED_SINCE_HEADER = "If-Modified-Since";
+
+  private ConditionalGet() {}
+
+  /**
+   * Sets the validators of a response whose data was last written at {@code lastModifiedMillis} and
+   * returns true if the request already holds that version, in which case the status is set to 304
+   * and nothing else should be written. The tags are weak because they version the data and not the
+   * bytes, which may be compressed or formatted differently.
+   */
+  static boolean isNotModified(
+      HttpServletRequest request, HttpServletResponse response, long lastModifiedMillis) {
+    String etag = "W/\"" + Long.toHexString(lastModifiedMillis) + "\"";
+    response.setHeader(ETAG_HEADER, etag);
+    if (lastModifiedMillis > 0) {
+      response.setDateHeader(LAST_MODIFIED_HEADER, lastModifiedMillis);
+    }
+    // Browsers may keep the response but have to check that it is still current before using it.
+    response.setHeader(CACHE_CONTROL_HEADER, "no-cache");
+
+    boolean notModified;
+    String ifNoneMatch = request.getHeader(IF_NONE_MATCH_HEADER);
+    if (ifNoneMatch != null) {
+      notModified = matches(ifNoneMatch, etag);
+    } else {
+      notModified = lastModifiedMillis > 0 && isNotModifiedSince(request, lastModifiedMillis);
+    }
+    if (notModified) {
+      response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+    return notModified;
+  }
+
+  /** Returns true if a list of entity tags contains {@code etag}, using weak comparison. */
+  private static boolean matches(String ifNoneMatch, String etag) {
+    String opaqueTag = stripWeakPrefix(etag);
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.equals("*") || stripWeakPrefix(tag).equals(opaqueTag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String stripWeakPrefix(String tag) {
+    return tag.startsWith("W/") ? tag.substring(2) : tag;
+  }
+
+  /** Compares at the one second precision of HTTP dates. */
+  private static boolean isNotModifiedSince(HttpServletRequest request, long lastModifiedMillis) {
+    long since;
+    try {
+      since = request.getDateHeader(IF_MODIFIED_SINCE_HEADER);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    return since != -1 && lastModifiedMillis / 1000 <= since / 1000;
+  }
+}
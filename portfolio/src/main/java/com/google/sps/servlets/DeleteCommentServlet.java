@@ -14,29 +14,101 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Key;
-import com.google.appengine.api.datastore.KeyFactory;
-import com.google.sps.data.CommentEntity;
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.CommentEventBus;
+import com.google.sps.data.CommentFilter;
+import com.google.sps.data.CommentRepository;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet for deleting comments. */
+/**
+ * Servlet for deleting comments. A single comment is deleted by its {@code id}. Admins may also
+ * delete many comments at once, either by passing several {@code id} parameters or by purging all
+ * comments that match an {@code email}, a {@code mood} and/or a time range from {@code from}
+ * (inclusive) to {@code to} (exclusive) in epoch milliseconds.
+ */
 @WebServlet("/delete-comment")
 public class DeleteCommentServlet extends HttpServlet {
 
   private static final String ID_PARAMETER = "id";
+  private static final String EMAIL_PARAMETER = "email";
+  private static final String MOOD_PARAMETER = "mood";
+  private static final String FROM_PARAMETER = "from";
+  private static final String TO_PARAMETER = "to";
 
-  /** Deletes a comment specified by the passed ID. */
+  /** Deletes the comment specified by the passed ID, or all comments selected by the request. */
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    long id = Long.parseLong(request.getParameter(ID_PARAMETER));
-    Key commentEntityKey = KeyFactory.createKey(CommentEntity.KIND.getLabel(), id);
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    datastore.delete(commentEntityKey);
+    String[] idValues = request.getParameterValues(ID_PARAMETER);
+    CommentFilter purgeFilter;
+    List<Long> ids = new ArrayList<>();
+    try {
+      purgeFilter =
+          new CommentFilter(
+              getParameter(request, EMAIL_PARAMETER),
+              getParameter(request, MOOD_PARAMETER),
+              getLongParameter(request, FROM_PARAMETER),
+              getLongParameter(request, TO_PARAMETER));
+      if (idValues != null) {
+        for (String id : idValues) {
+          ids.add(Long.parseLong(id));
+        }
+      }
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid number: " + e.getMessage());
+      return;
+    }
+    if (purgeFilter.getFrom() != null
+        && purgeFilter.getTo() != null
+        && purgeFilter.getFrom() > purgeFilter.getTo()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Time range ends before it starts");
+      return;
+    }
+
+    CommentRepository comments = Services.get(getServletContext()).getComments();
+    CommentEventBus events = Services.get(getServletContext()).getCommentEvents();
+    if (purgeFilter.isEmpty() && ids.size() == 1) {
+      if (comments.delete(ids.get(0))) {
+        CommentCache.getInstance().invalidate();
+        events.publishDeleted(ids.get(0));
+      }
+      return;
+    }
+    if (purgeFilter.isEmpty() && ids.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No comments selected");
+      return;
+    }
+    if (!AdminAccess.isAllowed(request)) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+
+    int deleted = comments.deleteAll(ids);
+    if (!purgeFilter.isEmpty()) {
+      deleted += comments.deleteMatching(purgeFilter);
+    }
+    CommentCache.getInstance().invalidate();
+    if (deleted > 0) {
+      events.publishReset();
+    }
+    response.setContentType("text/plain;");
+    response.getWriter().println("Deleted " + deleted + " comments.");
+  }
+
+  /** Returns the request parameter, or null if it is not specified. */
+  private static String getParameter(HttpServletRequest request, String name) {
+    String value = request.getParameter(name);
+    return value == null || value.isEmpty() ? null : value;
+  }
+
+  /** Returns the numeric request parameter, or null if it is not specified. */
+  private static Long getLongParameter(HttpServletRequest request, String name) {
+    String value = getParameter(request, name);
+    return value == null ? null : Long.valueOf(value);
   }
 }
@@ -14,19 +14,21 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.FetchOptions;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.SortDirection;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.google.sps.data.Comment;
-import com.google.sps.data.CommentEntity;
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.CommentCursor;
+import com.google.sps.data.CommentRepository;
+import com.google.sps.data.CommentRepository.Order;
+import com.google.sps.data.SerializedCommentPage;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -38,40 +40,129 @@ public class ListCommentServlet extends HttpServlet {
 
   private static final String COMMENT_NUMBER_QUERY_PARAM = "limit";
   private static final String SORT_ORDER_QUERY_PARAM = "sort";
+  private static final String CURSOR_QUERY_PARAM = "cursor";
 
-  /** Loads and returns comments from the datastore database. */
+  /**
+   * Loads and returns one page of comments. Pages are resumed from the (time, ID) position of the
+   * previous page's last comment so earlier comments are never re-read. First pages are served from
+   * the in-process {@link CommentCache} when possible. Comments are written to the response as they
+   * are read, without collecting the page first. Clients that already hold the page as of the last
+   * comment write get an empty 304 response. While the version of the comments is unknown, because
+   * their stats have not been built yet, pages are served without the cache and without validators.
+   */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Query query = new Query(CommentEntity.KIND.getLabel());
     String sortOrder = request.getParameter(SORT_ORDER_QUERY_PARAM);
+    Order order;
     switch (sortOrder) {
       case "old":
-        query.addSort(CommentEntity.TIME_PROPERTY.getLabel(), SortDirection.ASCENDING);
+        order = Order.OLDEST_FIRST;
         break;
       case "new":
       default:
-        query.addSort(CommentEntity.TIME_PROPERTY.getLabel(), SortDirection.DESCENDING);
+        sortOrder = "new";
+        order = Order.NEWEST_FIRST;
     }
+    int commentNumber = Integer.parseInt(request.getParameter(COMMENT_NUMBER_QUERY_PARAM));
 
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
+    CommentCursor cursor = null;
+    String cursorToken = request.getParameter(CURSOR_QUERY_PARAM);
+    if (cursorToken != null && !cursorToken.isEmpty()) {
+      try {
+        cursor = CommentCursor.decode(cursorToken);
+      } catch (IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        return;
+      }
+    }
 
-    int commentNumber = Integer.parseInt(request.getParameter(COMMENT_NUMBER_QUERY_PARAM));
-    FetchOptions limitComments = FetchOptions.Builder.withLimit(commentNumber);
-    List<Comment> comments = new ArrayList<>();
-    for (Entity entity : results.asIterable(limitComments)) {
-      long id = entity.getKey().getId();
-      String content = (String) entity.getProperty(CommentEntity.CONTENT_PROPERTY.getLabel());
-      String email = (String) entity.getProperty(CommentEntity.EMAIL_PROPERTY.getLabel());
-      String username = (String) entity.getProperty(CommentEntity.USERNAME_PROPERTY.getLabel());
-      long time = (long) entity.getProperty(CommentEntity.TIME_PROPERTY.getLabel());
-      String mood = (String) entity.getProperty(CommentEntity.MOOD_PROPERTY.getLabel());
-      comments.add(new Comment(id, content, email, username, time, mood));
+    CommentRepository comments = Services.get(getServletContext()).getComments();
+    CommentCache cache = CommentCache.getInstance();
+    long cacheGeneration = cache.getGeneration();
+    long version = cache.getVersion(comments);
+    if (version != -1 && ConditionalGet.isNotModified(request, response, version)) {
+      return;
+    }
+
+    if (cursor == null && version != -1) {
+      byte[] json = cache.get(sortOrder, commentNumber, version);
+      if (json != null) {
+        writeJson(response, json);
+        return;
+      }
     }
 
     response.setContentType("application/json;");
     response.setCharacterEncoding("UTF-8");
-    Gson gson = new Gson();
-    response.getWriter().println(gson.toJson(comments));
+    // First pages are copied aside while they are streamed so that they can be cached.
+    ByteArrayOutputStream copy =
+        cursor == null && version != -1 ? new ByteArrayOutputStream() : null;
+    OutputStream out = response.getOutputStream();
+    if (copy != null) {
+      out = new TeeOutputStream(out, copy);
+    }
+
+    Gson gson = Services.get(getServletContext()).getGson();
+    JsonWriter writer =
+        new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    writer.setSerializeNulls(false);
+    writer.beginObject();
+    writer.name("comments").beginArray();
+    // The newest comments may be kept serialized, which saves both the query and serializing.
+    SerializedCommentPage newest =
+        order == Order.NEWEST_FIRST && cursor == null
+            ? comments.getNewestPage(commentNumber)
+            : null;
+    CommentCursor next;
+    if (newest != null) {
+      for (String comment : newest.getComments()) {
+        writer.jsonValue(comment);
+      }
+      next = newest.getNextCursor();
+    } else {
+      next =
+          comments.list(
+              order, cursor, commentNumber, comment -> gson.toJson(comment, Comment.class, writer));
+    }
+    writer.endArray();
+    if (next != null) {
+      writer.name("nextCursor").value(next.encode());
+    }
+    writer.endObject();
+    writer.close();
+
+    if (copy != null) {
+      cache.put(sortOrder, commentNumber, copy.toByteArray(), version, cacheGeneration);
+    }
+  }
+
+  /** Sends already serialized UTF-8 JSON as the response body. */
+  private static void writeJson(HttpServletResponse response, byte[] json) throws IOException {
+    response.setContentType("application/json;");
+    response.setCharacterEncoding("UTF-8");
+    response.setContentLength(json.length);
+    response.getOutputStream().write(json);
+  }
+
+  /** Writes everything to the response and also to a copy. */
+  private static final class TeeOutputStream extends FilterOutputStream {
+    private final OutputStream copy;
+
+    private TeeOutputStream(OutputStream out, OutputStream copy) {
+      super(out);
+      this.copy = copy;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      copy.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      copy.write(b, off, len);
+    }
   }
 }
@@ -0,0 +1,75 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.metrics.RequestMetrics;
+import com.google.sps.metrics.RequestMetrics.Endpoint;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRegistration;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Times every request to a servlet and attributes the datastore calls made while handling it to the
+ * servlet's path (see {@link RequestMetrics}). Requests to paths no servlet is mapped to are not
+ * recorded, so that stray URLs cannot create metrics. Asynchronous requests, such as event streams,
+ * are left out of the latency histograms, since they stay open for as long as the client listens.
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class MetricsFilter implements Filter {
+
+  private final Set<String> servletPaths = new HashSet<>();
+
+  @Override
+  public void init(FilterConfig config) {
+    for (ServletRegistration registration :
+        config.getServletContext().getServletRegistrations().values()) {
+      servletPaths.addAll(registration.getMappings());
+    }
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    String path = ((HttpServletRequest) request).getServletPath();
+    if (!servletPaths.contains(path)) {
+      chain.doFilter(request, response);
+      return;
+    }
+    RequestMetrics metrics = RequestMetrics.getInstance();
+    Endpoint endpoint = metrics.getEndpoint(path);
+    long start = System.nanoTime();
+    metrics.begin(endpoint);
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      metrics.end();
+      if (!request.isAsyncStarted()) {
+        endpoint.getLatency().record((System.nanoTime() - start) / 1000);
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {}
+}
@@ -0,0 +1,51 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.data.CommentCache;
+import com.google.sps.metrics.RequestMetrics;
+import java.io.IOException;
+import java.io.PrintWriter;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet for exposing this instance's request latencies, datastore usage and comment cache counts
+ * in the Prometheus text format. Every instance reports only the requests it handled.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    response.setContentType("text/plain; version=0.0.4");
+    response.setCharacterEncoding("UTF-8");
+    PrintWriter out = response.getWriter();
+    RequestMetrics.getInstance().writePrometheus(out);
+
+    CommentCache cache = CommentCache.getInstance();
+    out.println("# HELP sps_comment_cache_hits_total First comment pages served from the cache.");
+    out.println("# TYPE sps_comment_cache_hits_total counter");
+    out.println("sps_comment_cache_hits_total " + cache.getHitCount());
+    out.println("# HELP sps_comment_cache_misses_total First comment pages loaded on a miss.");
+    out.println("# TYPE sps_comment_cache_misses_total counter");
+    out.println("sps_comment_cache_misses_total " + cache.getMissCount());
+    out.println("# HELP sps_comment_cache_size Comment pages currently cached.");
+    out.println("# TYPE sps_comment_cache_size gauge");
+    out.println("sps_comment_cache_size " + cache.size());
+  }
+}
@@ -0,0 +1,44 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.sps.data.ViewCounter;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet for migrating views rows written before page views were sharded into the day-keyed
+ * shards. Only available to admins; safe to run more than once.
+ */
+@WebServlet("/migrate-page-views")
+public class MigratePageViewsServlet extends HttpServlet {
+
+  /** Migrates all legacy views rows and reports how many were rewritten. */
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!AdminAccess.isAllowed(request)) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return;
+    }
+    DatastoreService datastore = Services.get(getServletContext()).getDatastore();
+    int migrated = ViewCounter.migrateLegacyRows(datastore);
+    response.setContentType("text/plain;");
+    response.getWriter().println("Migrated " + migrated + " views rows.");
+  }
+}
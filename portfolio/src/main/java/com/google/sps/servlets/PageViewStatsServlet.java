@@ -14,24 +14,22 @@
 
 package com.google.sps.servlets;
 
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.CompositeFilter;
-import com.google.appengine.api.datastore.Query.CompositeFilterOperator;
-import com.google.appengine.api.datastore.Query.FilterOperator;
-import com.google.appengine.api.datastore.Query.FilterPredicate;
 import com.google.gson.Gson;
-import com.google.sps.data.ViewsEntity;
+import com.google.sps.data.JsonSupport;
+import com.google.sps.data.ViewCounter;
+import com.google.sps.data.ViewCounts;
+import com.google.sps.data.ViewRollups;
+import com.google.sps.data.ViewRollups.Granularity;
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.FormatStyle;
-import java.util.Arrays;
+import java.time.temporal.ChronoUnit;
 import java.util.Date;
 import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -41,50 +39,101 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/page-view-stats")
 public class PageViewStatsServlet extends HttpServlet {
 
-  /** Loads views from the datastore database and returns data from the last week. */
+  private static final String DAYS_QUERY_PARAM = "days";
+  private static final String PAGE_QUERY_PARAM = "page";
+  private static final int DEFAULT_DAYS = 7;
+  private static final int MAX_DAYS = 366;
+
+  /**
+   * Loads views from the datastore database and returns data from the last week, or from the last
+   * {@code days} days if given. Views of a single {@code page} are read from the hourly, daily or
+   * monthly rollups, whichever is the coarsest that fits the window. Clients that already hold the
+   * current counts get an empty 304 response without the counts being formatted or serialized.
+   */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Date date = new Date();
-    LocalDate currentDate = date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    int days = DEFAULT_DAYS;
+    String daysParameter = request.getParameter(DAYS_QUERY_PARAM);
+    if (daysParameter != null && !daysParameter.isEmpty()) {
+      try {
+        days = Integer.parseInt(daysParameter);
+      } catch (NumberFormatException e) {
+        days = -1;
+      }
+      if (days < 1 || days > MAX_DAYS) {
+        response.sendError(
+            HttpServletResponse.SC_BAD_REQUEST, "days must be between 1 and " + MAX_DAYS);
+        return;
+      }
+    }
 
+    Date date = new Date();
+    LocalDateTime now = date.toInstant().atZone(ZoneId.systemDefault()).toLocalDateTime();
+    LocalDate currentDate = now.toLocalDate();
+    LocalDate startDate = currentDate.minusDays(days - 1);
+    Services services = Services.get(getServletContext());
     LinkedHashMap<String, Long> views = new LinkedHashMap<>();
-    for (int i = 6; i >= 0; i--) {
-      LocalDate dateOfInterest = currentDate.minusDays(i);
-      String formattedDate =
-          DateTimeFormatter.ofLocalizedDate(FormatStyle.SHORT).format(dateOfInterest);
-      views.put(formattedDate, getCount(dateOfInterest));
+    String page = request.getParameter(PAGE_QUERY_PARAM);
+    if (page == null || page.isEmpty()) {
+      ViewCounts<LocalDate> counts =
+          ViewCounter.getCounts(services.getAsyncDatastore(), startDate, currentDate);
+      if (isNotModified(request, response, counts, currentDate.atStartOfDay())) {
+        return;
+      }
+      DateTimeFormatter formatter = DateTimeFormatter.ofLocalizedDate(FormatStyle.SHORT);
+      for (Map.Entry<LocalDate, Long> count : counts.getCounts().entrySet()) {
+        views.put(formatter.format(count.getKey()), count.getValue());
+      }
+    } else {
+      Granularity granularity = ViewRollups.getGranularity(days);
+      ViewCounts<LocalDateTime> counts =
+          ViewRollups.getCounts(
+              services.getDatastore(), page, granularity, startDate.atStartOfDay(), now);
+      LocalDateTime windowChanged =
+          granularity == Granularity.HOUR
+              ? now.truncatedTo(ChronoUnit.HOURS)
+              : currentDate.atStartOfDay();
+      if (isNotModified(request, response, counts, windowChanged)) {
+        return;
+      }
+      DateTimeFormatter formatter = getFormatter(granularity);
+      for (Map.Entry<LocalDateTime, Long> count : counts.getCounts().entrySet()) {
+        views.put(formatter.format(count.getKey()), count.getValue());
+      }
     }
 
     response.setContentType("application/json;");
     response.setCharacterEncoding("UTF-8");
-    Gson gson = new Gson();
-    response.getWriter().println(gson.toJson(views));
+    Gson gson = services.getGson();
+    gson.toJson(views, JsonSupport.COUNTS_TYPE, response.getWriter());
   }
 
-  /** Returns number of page views on given date. */
-  private long getCount(LocalDate date) {
-    int year = date.getYear();
-    int month = date.getMonthValue();
-    int day = date.getDayOfMonth();
-
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = new Query(ViewsEntity.KIND.getLabel());
-    query.setFilter(
-        new CompositeFilter(
-            CompositeFilterOperator.AND,
-            Arrays.asList(
-                new FilterPredicate(
-                    ViewsEntity.YEAR_PROPERTY.getLabel(), FilterOperator.EQUAL, year),
-                new FilterPredicate(
-                    ViewsEntity.MONTH_PROPERTY.getLabel(), FilterOperator.EQUAL, month),
-                new FilterPredicate(
-                    ViewsEntity.DAY_PROPERTY.getLabel(), FilterOperator.EQUAL, day))));
+  /**
+   * Checks the request against the counts' version. The window of periods moves on at {@code
+   * windowChanged} even if no views were counted since, so the counts are as new as the later of
+   * the two.
+   */
+  private static boolean isNotModified(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      ViewCounts<?> counts,
+      LocalDateTime windowChanged) {
+    long windowChangedMillis =
+        windowChanged.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    return ConditionalGet.isNotModified(
+        request, response, Math.max(counts.getLastUpdated(), windowChangedMillis));
+  }
 
-    Entity viewsEntity = datastore.prepare(query).asSingleEntity();
-    if (viewsEntity == null) {
-      return 0;
-    } else {
-      return (long) (viewsEntity.getProperty(ViewsEntity.COUNT_PROPERTY.getLabel()));
+  /** Returns the formatter for chart labels of periods of the given granularity. */
+  private static DateTimeFormatter getFormatter(Granularity granularity) {
+    switch (granularity) {
+      case MONTH:
+        return DateTimeFormatter.ofPattern("MMM yyyy");
+      case DAY:
+        return DateTimeFormatter.ofLocalizedDate(FormatStyle.SHORT);
+      case HOUR:
+      default:
+        return DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT);
     }
   }
 }
@@ -0,0 +1,94 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.AsyncDatastoreService;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.gson.Gson;
+import com.google.sps.data.CommentEventBus;
+import com.google.sps.data.CommentRepository;
+import com.google.sps.data.DatastoreCommentRepository;
+import com.google.sps.data.InMemoryCommentRepository;
+import com.google.sps.data.JsonSupport;
+import com.google.sps.metrics.CountingDatastore;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Application-wide services shared by all servlets: one Gson, one datastore client of each kind,
+ * the comment repository and the bus of live comment events. They are created when the application
+ * starts, before any request is served, and are all safe to use from concurrent requests.
+ */
+@WebListener
+public final class Services implements ServletContextListener {
+
+  private static final String ATTRIBUTE = Services.class.getName();
+  private static final String REPOSITORY_PROPERTY = "sps.comments.repository";
+
+  private Gson gson;
+  private DatastoreService datastore;
+  private AsyncDatastoreService asyncDatastore;
+  private CommentRepository comments;
+  private CommentEventBus commentEvents;
+
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    gson = JsonSupport.createGson();
+    // Datastore calls are counted per request for the metrics endpoint.
+    datastore = CountingDatastore.wrap(DatastoreServiceFactory.getDatastoreService());
+    asyncDatastore = CountingDatastore.wrap(DatastoreServiceFactory.getAsyncDatastoreService());
+    if ("memory".equals(System.getProperty(REPOSITORY_PROPERTY))) {
+      comments = new InMemoryCommentRepository();
+    } else {
+      comments = new DatastoreCommentRepository(datastore, asyncDatastore);
+    }
+    commentEvents = new CommentEventBus();
+    event.getServletContext().setAttribute(ATTRIBUTE, this);
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {
+    event.getServletContext().removeAttribute(ATTRIBUTE);
+    commentEvents.shutdown();
+  }
+
+  /** Returns the services of the application that {@code context} belongs to. */
+  static Services get(ServletContext context) {
+    return (Services) context.getAttribute(ATTRIBUTE);
+  }
+
+  Gson getGson() {
+    return gson;
+  }
+
+  DatastoreService getDatastore() {
+    return datastore;
+  }
+
+  AsyncDatastoreService getAsyncDatastore() {
+    return asyncDatastore;
+  }
+
+  CommentRepository getComments() {
+    return comments;
+  }
+
+  CommentEventBus getCommentEvents() {
+    return commentEvents;
+  }
+}
@@ -43,7 +43,7 @@ public class UserServlet extends HttpServlet {
       String loginUrl = userService.createLoginURL(REDIRECT_URL);
       status = new LoginStatus(false, "", loginUrl);
     }
-    Gson gson = new Gson();
-    response.getWriter().println(gson.toJson(status));
+    Gson gson = Services.get(getServletContext()).getGson();
+    gson.toJson(status, response.getWriter());
   }
 }
@@ -14,6 +14,10 @@
 
 /* eslint-disable no-unused-vars */
 
+import {updatePageViews} from '/script.js';
+
+updatePageViews();
+
 /** Current slide index in photo gallery. */
 let slideIndex = 0;
 
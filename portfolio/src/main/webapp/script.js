@@ -18,6 +18,12 @@
 let commentLimit = 4;
 let sortOrder = 'new';
 
+/** Token for fetching the next page of comments, null if there is none. */
+let nextCursor = null;
+
+/** Email of the signed in user, whose comments can be deleted. */
+let userEmail = '';
+
 /** Moods that can be selected in the comment form. */
 const moods = ['😀', '🤔', '🤠', '☹️', '👽'];
 export default moods;
@@ -26,6 +32,7 @@ export default moods;
 window.init = function init() {
   showCommentForm();
   showComments();
+  subscribeToComments();
   updatePageViews();
 };
 
@@ -39,6 +46,7 @@ async function showCommentForm() {
   message.innerHTML = '';
   message.append(createLoginMessage(status));
   document.getElementById('email-input').value = status.userEmail;
+  userEmail = status.userEmail;
   if (status.loggedIn) {
     document.getElementById('comments-form').style.display = 'block';
   } else {
@@ -101,19 +109,44 @@ window.changeSort = function changeSort() {
 
 /** Displays list of comments returned by the server if user is logged in.*/
 async function showComments() {
+  nextCursor = null;
+  document.getElementById('text-container').innerHTML = '';
+  appendComments();
+}
+
+/** Called when the load more button is clicked: shows the next page. */
+window.loadMoreComments = function loadMoreComments() {
+  appendComments();
+};
+
+/**
+ * Fetches the page of comments after the current cursor
+ * and appends it to the list of comments.
+ */
+async function appendComments() {
   const url = new URL(window.location.origin + '/comments');
   const params = {limit: commentLimit, sort: sortOrder};
+  if (nextCursor !== null) {
+    params.cursor = nextCursor;
+  }
   url.search = new URLSearchParams(params).toString();
   fetch(url)
-      .then((response) => response.json()).then(async (comments) => {
+      .then((response) => response.json()).then(async (page) => {
         const commentsList = document.getElementById('text-container');
         const status = await fetchLoginStatus();
         const currEmail = status.userEmail;
-        commentsList.innerHTML = '';
-        for (let i = 0; i < comments.length; i++) {
-          const commentElement = createCommentElement(comments[i], currEmail);
+        for (let i = 0; i < page.comments.length; i++) {
+          // Live updates may have shown the comment already.
+          if (findCommentElement(page.comments[i].id) !== null) {
+            continue;
+          }
+          const commentElement =
+              createCommentElement(page.comments[i], currEmail);
           commentsList.appendChild(commentElement);
         }
+        nextCursor = page.nextCursor === undefined ? null : page.nextCursor;
+        document.getElementById('load-more-button').style.display =
+            nextCursor === null ? 'none' : 'inline-block';
       });
 }
 
@@ -126,6 +159,7 @@ async function showComments() {
 function createCommentElement(comment, currentEmail) {
   const element = document.createElement('div');
   element.className = 'comment';
+  element.dataset.commentId = comment.id;
   const username = document.createElement('span');
   username.innerText = comment.username;
   username.className = 'comment-username';
@@ -154,6 +188,53 @@ function createCommentElement(comment, currentEmail) {
   return element;
 }
 
+/**
+ * Returns the displayed element of a comment.
+ * @param {number} id The comment ID.
+ * @return {HTMLElement} The element, or null if the comment is not shown.
+ */
+function findCommentElement(id) {
+  return document.querySelector(
+      '#text-container [data-comment-id="' + id + '"]');
+}
+
+/**
+ * Listens for comments added or deleted by anyone and updates the list.
+ * The browser reconnects by itself whenever the stream is closed. On App
+ * Engine, whose front end buffers whole responses, the events of a stream
+ * only arrive when it closes, so changes show up to 50 seconds late; only
+ * the development server pushes them as they happen.
+ */
+function subscribeToComments() {
+  if (!window.EventSource) {
+    return;
+  }
+  const stream = new EventSource('/comments/stream');
+  stream.addEventListener('added', (event) => {
+    const comment = JSON.parse(event.data);
+    if (findCommentElement(comment.id) !== null) {
+      return;
+    }
+    const commentsList = document.getElementById('text-container');
+    const commentElement = createCommentElement(comment, userEmail);
+    if (sortOrder === 'new') {
+      commentsList.prepend(commentElement);
+    } else if (nextCursor === null) {
+      // New comments come last, so only show it once all others are shown.
+      commentsList.appendChild(commentElement);
+    }
+  });
+  stream.addEventListener('deleted', (event) => {
+    const element = findCommentElement(JSON.parse(event.data).id);
+    if (element !== null) {
+      element.remove();
+    }
+  });
+  stream.addEventListener('reset', () => {
+    showComments();
+  });
+}
+
 /**
  * Deletes all comments on by the server.
  * @param {Object} comment The comment object.
@@ -185,9 +266,15 @@ window.addComment = async function addComment() {
   showComments();
 };
 
-/** Increments daily page view count. */
-function updatePageViews() {
+/**
+ * Increments the view count of the current page, and for the index page also
+ * the daily page view count.
+ */
+export function updatePageViews() {
+  const params = new URLSearchParams();
+  params.append('page', window.location.pathname);
   fetch('/add-page-view', {
     method: 'POST',
+    body: params,
   });
 }
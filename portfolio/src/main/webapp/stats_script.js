@@ -15,12 +15,13 @@
 /* eslint-disable no-unused-vars */
 /* eslint-disable require-jsdoc*/
 
-import moods from '/script.js';
+import moods, {updatePageViews} from '/script.js';
+
+updatePageViews();
 
 google.charts.load('current', {'packages': ['corechart']});
 google.charts.setOnLoadCallback(displayPageViewsCharts);
-google.charts.setOnLoadCallback(displayGeneralCommentChart);
-google.charts.setOnLoadCallback(displayMoodCommentChart);
+google.charts.setOnLoadCallback(displayCommentCharts);
 
 /** Display settings for all the charts. */
 const options = {
@@ -75,35 +76,37 @@ function displayPageViewsCharts() {
       });
 }
 
-function displayGeneralCommentChart() {
+function displayCommentCharts() {
   fetch('/comment-stats')
       .then((response) => response.json()).then((data) => {
-        const dataTable = new google.visualization.DataTable();
-        dataTable.addColumn('string', 'Username' );
-        dataTable.addColumn('number', 'Number of Comments');
-        const anonymousTotal = data['commentCount']['anonymousTotal'];
-        const total = data['commentCount']['total'] - anonymousTotal;
-        dataTable.addRows([
-          ['Anonymous', anonymousTotal],
-          ['Custom Username', total],
-        ]);
-        const chart = new google.visualization.PieChart(
-            document.getElementById('comment-piechart'));
-        chart.draw(dataTable, options);
+        displayGeneralCommentChart(data);
+        displayMoodCommentChart(data);
       });
 }
 
-function displayMoodCommentChart() {
-  fetch('/comment-stats')
-      .then((response) => response.json()).then((data) => {
-        const dataTable = new google.visualization.DataTable();
-        dataTable.addColumn('string', 'Mood' );
-        dataTable.addColumn('number', 'Number of Comments');
-        for (const mood of moods) {
-          dataTable.addRow([mood, data['moodCount'][mood]]);
-        }
-        const chart = new google.visualization.PieChart(
-            document.getElementById('mood-piechart'));
-        chart.draw(dataTable, options);
-      });
+function displayGeneralCommentChart(data) {
+  const dataTable = new google.visualization.DataTable();
+  dataTable.addColumn('string', 'Username' );
+  dataTable.addColumn('number', 'Number of Comments');
+  const anonymousTotal = data['commentCount']['anonymousTotal'];
+  const total = data['commentCount']['total'] - anonymousTotal;
+  dataTable.addRows([
+    ['Anonymous', anonymousTotal],
+    ['Custom Username', total],
+  ]);
+  const chart = new google.visualization.PieChart(
+      document.getElementById('comment-piechart'));
+  chart.draw(dataTable, options);
+}
+
+function displayMoodCommentChart(data) {
+  const dataTable = new google.visualization.DataTable();
+  dataTable.addColumn('string', 'Mood' );
+  dataTable.addColumn('number', 'Number of Comments');
+  for (const mood of moods) {
+    dataTable.addRow([mood, data['moodCount'][mood]]);
+  }
+  const chart = new google.visualization.PieChart(
+      document.getElementById('mood-piechart'));
+  chart.draw(dataTable, options);
 }
@@ -0,0 +1,106 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary that interns attendee names to dense {@code int} IDs, so that sets of attendees can be
+ * stored as sorted {@code int} arrays and compared without hashing strings. IDs are assigned in the
+ * order names are first seen, starting at 0, and never change.
+ */
+public final class AttendeeDictionary {
+  private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  private final List<String> names = new ArrayList<>();
+
+  /**
+   * Returns the ID of an attendee, assigning the next free one if the name is new.
+   */
+  public synchronized int intern(String name) {
+    Integer id = ids.get(name);
+    if (id == null) {
+      id = names.size();
+      names.add(name);
+      ids.put(name, id);
+    }
+    return id;
+  }
+
+  /**
+   * Returns the ID of an attendee, or -1 if the name was never interned.
+   */
+  public int find(String name) {
+    Integer id = ids.get(name);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Returns the name of the attendee with the given ID.
+   */
+  public synchronized String getName(int id) {
+    return names.get(id);
+  }
+
+  /**
+   * Returns the number of interned names.
+   */
+  public synchronized int size() {
+    return names.size();
+  }
+
+  /**
+   * Interns all attendees and returns their IDs in ascending order, without duplicates.
+   */
+  public int[] internAll(Collection<String> attendees) {
+    int[] result = new int[attendees.size()];
+    int size = 0;
+    for (String attendee : attendees) {
+      result[size++] = intern(attendee);
+    }
+    return sortedUnique(result, size);
+  }
+
+  /**
+   * Returns the IDs of the attendees in ascending order, without duplicates. Names that were never
+   * interned are left out, since no stored event can have them.
+   */
+  public int[] findAll(Collection<String> attendees) {
+    int[] result = new int[attendees.size()];
+    int size = 0;
+    for (String attendee : attendees) {
+      int id = find(attendee);
+      if (id >= 0) {
+        result[size++] = id;
+      }
+    }
+    return sortedUnique(result, size);
+  }
+
+  private static int[] sortedUnique(int[] ids, int size) {
+    Arrays.sort(ids, 0, size);
+    int unique = 0;
+    for (int i = 0; i < size; i++) {
+      if (unique == 0 || ids[i] != ids[unique - 1]) {
+        ids[unique++] = ids[i];
+      }
+    }
+    return unique == ids.length ? ids : Arrays.copyOf(ids, unique);
+  }
+}
@@ -0,0 +1,142 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the busy time of every attendee, built once from a collection of events so that meeting
+ * queries only look at the people they name instead of at every event. Each attendee's busy time is
+ * kept as a sorted array of merged, non-overlapping intervals.
+ *
+ * <p>Events can be added and removed later; only the arrays of their attendees are rebuilt. Queries
+ * may run concurrently with updates and always see every attendee either before or after an update.
+ *
+ * <p>Only the parts of events within the day count as busy time, and events without duration are
+ * not busy time at all.
+ */
+public final class CalendarIndex {
+  private static final int[] NO_INTERVALS = new int[0];
+
+  // How often each event was added, so that only added events can be removed.
+  private final Map<Event, Integer> events = new HashMap<>();
+
+  private final Map<String, Busy> busyByAttendee = new ConcurrentHashMap<>();
+
+  /**
+   * Creates an index of the given events.
+   *
+   * @param events The events to index. Must be non-null.
+   */
+  public CalendarIndex(Iterable<Event> events) {
+    for (Event event : events) {
+      this.events.merge(event, 1, Integer::sum);
+      for (String attendee : event.getAttendees()) {
+        busyByAttendee.computeIfAbsent(attendee, a -> new Busy()).count(event.getWhen(), 1);
+      }
+    }
+    for (Busy busy : busyByAttendee.values()) {
+      busy.merge();
+    }
+  }
+
+  /**
+   * Adds an event to the index.
+   */
+  public synchronized void add(Event event) {
+    events.merge(event, 1, Integer::sum);
+    for (String attendee : event.getAttendees()) {
+      Busy busy = busyByAttendee.computeIfAbsent(attendee, a -> new Busy());
+      busy.count(event.getWhen(), 1);
+      busy.merge();
+    }
+  }
+
+  /**
+   * Removes an event that was added to the index before. Returns false if it was not in the index.
+   */
+  public synchronized boolean remove(Event event) {
+    Integer count = events.get(event);
+    if (count == null) {
+      return false;
+    }
+    if (count == 1) {
+      events.remove(event);
+    } else {
+      events.put(event, count - 1);
+    }
+    for (String attendee : event.getAttendees()) {
+      Busy busy = busyByAttendee.get(attendee);
+      if (busy == null) {
+        // The attendee's other events were removed and this one is no busy time.
+        continue;
+      }
+      busy.count(event.getWhen(), -1);
+      busy.merge();
+      if (busy.intervals.length == 0) {
+        busyByAttendee.remove(attendee);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the busy time of an attendee as merged intervals in ascending order. Element {@code 2i}
+   * is the start of the i-th interval and element {@code 2i + 1} its exclusive end. The array must
+   * not be modified.
+   */
+  int[] getBusyIntervals(String attendee) {
+    Busy busy = busyByAttendee.get(attendee);
+    return busy == null ? NO_INTERVALS : busy.intervals;
+  }
+
+  /** The busy time of one attendee. */
+  private static final class Busy {
+    // The number of the attendee's events that start at each minute minus those that end there.
+    private final TreeMap<Integer, Integer> boundaries = new TreeMap<>();
+
+    private volatile int[] intervals = NO_INTERVALS;
+
+    private void count(TimeRange when, int delta) {
+      int start = Math.max(when.start(), TimeRange.START_OF_DAY);
+      int end = Math.min(when.end(), TimeRange.WHOLE_DAY.end());
+      if (start >= end) {
+        return;
+      }
+      boundaries.merge(start, delta, Integer::sum);
+      boundaries.merge(end, -delta, Integer::sum);
+    }
+
+    /** Rebuilds the merged intervals from the boundaries. */
+    private void merge() {
+      boundaries.values().removeIf(delta -> delta == 0);
+      int[] merged = new int[boundaries.size()];
+      int size = 0;
+      int overlapping = 0;
+      for (Map.Entry<Integer, Integer> boundary : boundaries.entrySet()) {
+        boolean wasBusy = overlapping > 0;
+        overlapping += boundary.getValue();
+        if (wasBusy != overlapping > 0) {
+          merged[size++] = boundary.getKey();
+        }
+      }
+      intervals = size == merged.length ? merged : Arrays.copyOf(merged, size);
+    }
+  }
+}
@@ -0,0 +1,126 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.time.Instant;
+
+/**
+ * A span of time anywhere on the calendar, in whole minutes since the epoch (1970-01-01T00:00Z).
+ * Unlike {@code TimeRange}, which covers a single day, these ranges can be weeks long and are not
+ * tied to any timezone.
+ */
+public final class EpochRange {
+  private final long start;
+  private final long end;
+
+  private EpochRange(long start, long end) {
+    if (end < start) {
+      throw new IllegalArgumentException("end cannot come before start");
+    }
+
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Returns the start of the range in minutes since the epoch.
+   */
+  public long start() {
+    return start;
+  }
+
+  /**
+   * Returns the end of the range in minutes since the epoch. This is the closing exclusive bound.
+   */
+  public long end() {
+    return end;
+  }
+
+  /**
+   * Returns the number of minutes between the start and end.
+   */
+  public long duration() {
+    return end - start;
+  }
+
+  /**
+   * Checks if two ranges share at least one minute.
+   */
+  public boolean overlaps(EpochRange other) {
+    return start < other.end && other.start < end;
+  }
+
+  /**
+   * Checks if this range completely contains another, non-empty range.
+   */
+  public boolean contains(EpochRange other) {
+    return start <= other.start && other.end <= end && other.start < other.end;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof EpochRange
+        && start == ((EpochRange) other).start
+        && end == ((EpochRange) other).end;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(start) ^ Long.hashCode(end);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Range: [%s, %s)", toInstant(start), toInstant(end));
+  }
+
+  /**
+   * Creates a range from {@code start} up to but not including {@code end}, both in minutes since
+   * the epoch.
+   */
+  public static EpochRange fromStartEnd(long start, long end) {
+    return new EpochRange(start, end);
+  }
+
+  /**
+   * Creates a range starting at {@code start} minutes since the epoch that is {@code duration}
+   * minutes long.
+   */
+  public static EpochRange fromStartDuration(long start, long duration) {
+    return new EpochRange(start, start + duration);
+  }
+
+  /**
+   * Creates a range from {@code start} up to but not including {@code end}. Both are rounded down
+   * to the minute.
+   */
+  public static EpochRange fromInstants(Instant start, Instant end) {
+    return new EpochRange(toEpochMinute(start), toEpochMinute(end));
+  }
+
+  /**
+   * Returns the minutes since the epoch of {@code instant}, rounded down to the minute.
+   */
+  public static long toEpochMinute(Instant instant) {
+    return Math.floorDiv(instant.getEpochSecond(), 60);
+  }
+
+  /**
+   * Returns the instant {@code epochMinute} minutes after the epoch.
+   */
+  public static Instant toInstant(long epochMinute) {
+    return Instant.ofEpochSecond(epochMinute * 60);
+  }
+}
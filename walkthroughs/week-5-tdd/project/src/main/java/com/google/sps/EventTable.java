@@ -0,0 +1,142 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Compact storage for large sets of events. Events are stored column by column in parallel
+ * primitive arrays: their start times, their durations, and the sorted IDs of their attendees from
+ * an {@link AttendeeDictionary}, all of which are kept in one array with an offset per event. Apart
+ * from the titles, a stored event costs no objects at all, and checking whether an event involves
+ * some attendees intersects two sorted arrays without allocating. Tables are not synchronized.
+ */
+public final class EventTable {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final AttendeeDictionary dictionary;
+  private String[] titles = new String[INITIAL_CAPACITY];
+  private int[] starts = new int[INITIAL_CAPACITY];
+  private int[] durations = new int[INITIAL_CAPACITY];
+  // The attendees of event i are stored from attendeeOffsets[i] up to attendeeOffsets[i + 1].
+  private int[] attendeeOffsets = new int[INITIAL_CAPACITY + 1];
+  private int[] attendeeIds = new int[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Creates an empty table that interns the attendees of its events in {@code dictionary}.
+   */
+  public EventTable(AttendeeDictionary dictionary) {
+    this.dictionary = dictionary;
+  }
+
+  /**
+   * Creates a table of the given events with a new dictionary.
+   */
+  public EventTable(Collection<Event> events) {
+    this(new AttendeeDictionary());
+    for (Event event : events) {
+      add(event);
+    }
+  }
+
+  /**
+   * Returns the dictionary the attendee IDs of this table come from.
+   */
+  public AttendeeDictionary getDictionary() {
+    return dictionary;
+  }
+
+  /**
+   * Appends an event to the table.
+   */
+  public void add(Event event) {
+    int[] attendees = dictionary.internAll(event.getAttendees());
+    if (size == starts.length) {
+      int capacity = size * 2;
+      titles = Arrays.copyOf(titles, capacity);
+      starts = Arrays.copyOf(starts, capacity);
+      durations = Arrays.copyOf(durations, capacity);
+      attendeeOffsets = Arrays.copyOf(attendeeOffsets, capacity + 1);
+    }
+    int offset = attendeeOffsets[size];
+    if (offset + attendees.length > attendeeIds.length) {
+      attendeeIds =
+          Arrays.copyOf(attendeeIds, Math.max(attendeeIds.length * 2, offset + attendees.length));
+    }
+    System.arraycopy(attendees, 0, attendeeIds, offset, attendees.length);
+    titles[size] = event.getTitle();
+    starts[size] = event.getWhen().start();
+    durations[size] = event.getWhen().duration();
+    attendeeOffsets[size + 1] = offset + attendees.length;
+    size++;
+  }
+
+  /**
+   * Returns the number of events in the table.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the start of event {@code index} in minutes.
+   */
+  public int getStart(int index) {
+    return starts[index];
+  }
+
+  /**
+   * Returns the duration of event {@code index} in minutes.
+   */
+  public int getDuration(int index) {
+    return durations[index];
+  }
+
+  /**
+   * Returns event {@code index} as an {@code Event}.
+   */
+  public Event getEvent(int index) {
+    String[] attendees = new String[attendeeOffsets[index + 1] - attendeeOffsets[index]];
+    for (int i = 0; i < attendees.length; i++) {
+      attendees[i] = dictionary.getName(attendeeIds[attendeeOffsets[index] + i]);
+    }
+    return new Event(
+        titles[index],
+        TimeRange.fromStartDuration(starts[index], durations[index]),
+        Arrays.asList(attendees));
+  }
+
+  /**
+   * Checks if any of the attendees, given as sorted IDs from the dictionary, attends event {@code
+   * index}.
+   */
+  public boolean involvesAny(int index, int[] attendees) {
+    int i = attendeeOffsets[index];
+    int end = attendeeOffsets[index + 1];
+    int j = 0;
+    while (i < end && j < attendees.length) {
+      if (attendeeIds[i] < attendees[j]) {
+        i++;
+      } else if (attendeeIds[i] > attendees[j]) {
+        j++;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,161 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Finds meeting slots for a {@link HorizonRequest} across a window of weeks, taking every
+ * attendee's working hours in their own timezone into account.
+ */
+public final class FindHorizonMeetingQuery {
+
+  /**
+   * Returns the free slots within the request's window of at least the requested duration in which
+   * all attendees are free and working, ordered by start. {@code events} may be in any order.
+   */
+  public Collection<EpochRange> query(Collection<HorizonEvent> events, HorizonRequest request) {
+    List<HorizonEvent> eventsByStart = new ArrayList<>(events);
+    eventsByStart.sort(Comparator.comparingLong(event -> event.getWhen().start()));
+    List<EpochRange> freeSlots = new ArrayList<>();
+    query(eventsByStart.iterator(), request, freeSlots::add);
+    return freeSlots;
+  }
+
+  /**
+   * Passes the free slots within the request's window of at least the requested duration in which
+   * all attendees are free and working to {@code freeSlots}, in order of their start.
+   *
+   * <p>{@code eventsByStart} must be ordered by start, so that calendars can be streamed from
+   * storage, and is only read up to the end of the window. Events and every attendee's time off
+   * work are merged by start in one pass that keeps only the next busy range of each source and the
+   * end of the busy time so far. Memory therefore depends on the number of attendees but not on the
+   * number of events or the length of the window.
+   *
+   * @throws IllegalArgumentException if the duration is not positive or the events are not ordered
+   */
+  public void query(
+      Iterator<HorizonEvent> eventsByStart,
+      HorizonRequest request,
+      Consumer<EpochRange> freeSlots) {
+    long duration = request.getDuration();
+    if (duration <= 0) {
+      throw new IllegalArgumentException("duration must be positive");
+    }
+
+    EpochRange window = request.getWindow();
+    PriorityQueue<BusySource> sources =
+        new PriorityQueue<>(Comparator.comparingLong(source -> source.next.start()));
+    BusySource.addTo(
+        sources, new AttendeeEvents(eventsByStart, request.getAttendees(), window.end()));
+    for (String attendee : request.getAttendees()) {
+      WorkingHours hours = request.getWorkingHours(attendee);
+      if (hours != null) {
+        BusySource.addTo(sources, hours.getOffHours(window));
+      }
+    }
+
+    long freeFrom = window.start();
+    while (!sources.isEmpty()) {
+      BusySource source = sources.poll();
+      EpochRange busy = source.next;
+      if (busy.start() >= window.end()) {
+        break;
+      }
+      if (busy.start() - freeFrom >= duration) {
+        freeSlots.accept(EpochRange.fromStartEnd(freeFrom, busy.start()));
+      }
+      freeFrom = Math.max(freeFrom, busy.end());
+      BusySource.addTo(sources, source.ranges);
+    }
+    if (window.end() - freeFrom >= duration) {
+      freeSlots.accept(EpochRange.fromStartEnd(freeFrom, window.end()));
+    }
+  }
+
+  /** Ordered busy ranges along with the next one, which orders the sources in the merge. */
+  private static final class BusySource {
+    private final Iterator<EpochRange> ranges;
+    private final EpochRange next;
+
+    private BusySource(Iterator<EpochRange> ranges, EpochRange next) {
+      this.ranges = ranges;
+      this.next = next;
+    }
+
+    /** Adds the rest of {@code ranges} to the merge, unless there is nothing left. */
+    private static void addTo(PriorityQueue<BusySource> sources, Iterator<EpochRange> ranges) {
+      if (ranges.hasNext()) {
+        sources.add(new BusySource(ranges, ranges.next()));
+      }
+    }
+  }
+
+  /**
+   * The times of the events any of the attendees go to, read from events ordered by start until the
+   * first that starts at or after {@code until}.
+   */
+  private static final class AttendeeEvents implements Iterator<EpochRange> {
+    private final Iterator<HorizonEvent> eventsByStart;
+    private final Collection<String> attendees;
+    private final long until;
+
+    private long lastStart = Long.MIN_VALUE;
+    private EpochRange next;
+
+    private AttendeeEvents(
+        Iterator<HorizonEvent> eventsByStart, Collection<String> attendees, long until) {
+      this.eventsByStart = eventsByStart;
+      this.attendees = attendees;
+      this.until = until;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && lastStart < until && eventsByStart.hasNext()) {
+        HorizonEvent event = eventsByStart.next();
+        EpochRange when = event.getWhen();
+        if (when.start() < lastStart) {
+          throw new IllegalArgumentException("events must be ordered by start: " + event);
+        }
+        lastStart = when.start();
+        if (when.duration() > 0
+            && lastStart < until
+            && !Collections.disjoint(event.getAttendees(), attendees)) {
+          next = when;
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public EpochRange next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      EpochRange result = next;
+      next = null;
+      return result;
+    }
+  }
+}
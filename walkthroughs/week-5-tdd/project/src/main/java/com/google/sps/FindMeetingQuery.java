@@ -15,12 +15,350 @@
 package com.google.sps;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
 
 public final class FindMeetingQuery {
+  private static final int MINUTES_PER_DAY = TimeRange.WHOLE_DAY.duration();
+
+  /**
+   * Returns the free slots of at least the requested duration in which all required and optional
+   * attendees are free, or if there are none, in which all required attendees are free.
+   *
+   * <p>Busy time is marked minute by minute in one bit mask for the required attendees and one for
+   * everybody, and free slots are read off the masks word by word. Calendars the masks cannot
+   * represent exactly, with events outside of the day or without duration, and requests without
+   * duration are answered by {@link #sweep}, which gives the same results everywhere else.
+   */
   public Collection<TimeRange> query(Collection<Event> events, MeetingRequest request) {
+    long meetingDuration = request.getDuration();
+    Collection<TimeRange> freeSlots = new ArrayList<>();
+    if (meetingDuration > MINUTES_PER_DAY) {
+      return freeSlots;
+    }
+    if (meetingDuration <= 0) {
+      return sweep(events, request);
+    }
+
+    Collection<String> attendees = request.getAttendees();
+    Collection<String> optionalAttendees = request.getOptionalAttendees();
+    BitSet busy = new BitSet(MINUTES_PER_DAY);
+    BitSet requiredBusy = new BitSet(MINUTES_PER_DAY);
+    for (Event event : events) {
+      boolean required = !Collections.disjoint(event.getAttendees(), attendees);
+      if (!required && Collections.disjoint(event.getAttendees(), optionalAttendees)) {
+        continue;
+      }
+      TimeRange when = event.getWhen();
+      if (when.duration() <= 0 || when.start() < 0 || when.end() > MINUTES_PER_DAY) {
+        return sweep(events, request);
+      }
+      busy.set(when.start(), when.end());
+      if (required) {
+        requiredBusy.set(when.start(), when.end());
+      }
+    }
+    findFreeSlots(busy, requiredBusy, meetingDuration, freeSlots);
+    return freeSlots;
+  }
+
+  /**
+   * Same as {@link #query(Collection, MeetingRequest)} for events stored in a table, whose
+   * attendees are matched by their interned IDs. Like there, calendars with events outside of the
+   * day or without duration and requests without duration are answered by {@link #sweep}.
+   */
+  public Collection<TimeRange> query(EventTable events, MeetingRequest request) {
+    long meetingDuration = request.getDuration();
+    Collection<TimeRange> freeSlots = new ArrayList<>();
+    if (meetingDuration > MINUTES_PER_DAY) {
+      return freeSlots;
+    }
+    if (meetingDuration <= 0) {
+      return sweep(getEvents(events), request);
+    }
+
+    int[] attendees = events.getDictionary().findAll(request.getAttendees());
+    int[] optionalAttendees = events.getDictionary().findAll(request.getOptionalAttendees());
+    BitSet busy = new BitSet(MINUTES_PER_DAY);
+    BitSet requiredBusy = new BitSet(MINUTES_PER_DAY);
+    for (int i = 0; i < events.size(); i++) {
+      boolean required = events.involvesAny(i, attendees);
+      if (!required && !events.involvesAny(i, optionalAttendees)) {
+        continue;
+      }
+      int start = events.getStart(i);
+      int end = start + events.getDuration(i);
+      if (start >= end || start < 0 || end > MINUTES_PER_DAY) {
+        return sweep(getEvents(events), request);
+      }
+      busy.set(start, end);
+      if (required) {
+        requiredBusy.set(start, end);
+      }
+    }
+    findFreeSlots(busy, requiredBusy, meetingDuration, freeSlots);
+    return freeSlots;
+  }
+
+  /** Returns all events of a table. */
+  private static List<Event> getEvents(EventTable events) {
+    List<Event> list = new ArrayList<>(events.size());
+    for (int i = 0; i < events.size(); i++) {
+      list.add(events.getEvent(i));
+    }
+    return list;
+  }
+
+  /** Adds the free slots for everybody, or if there are none, for the required attendees. */
+  private static void findFreeSlots(
+      BitSet busy, BitSet requiredBusy, long meetingDuration, Collection<TimeRange> freeSlots) {
+    if (busy.isEmpty()) {
+      freeSlots.add(TimeRange.WHOLE_DAY);
+      return;
+    }
+    findFreeSlots(busy, meetingDuration, freeSlots);
+    if (freeSlots.isEmpty()) {
+      if (requiredBusy.isEmpty()) {
+        freeSlots.add(TimeRange.WHOLE_DAY);
+      } else {
+        findFreeSlots(requiredBusy, meetingDuration, freeSlots);
+      }
+    }
+  }
+
+  /**
+   * Same as {@link #query(Collection, MeetingRequest)}, but reads the busy time of the requested
+   * attendees from an index, so that the cost only grows with the number of their busy intervals
+   * and not with the size of the calendar. The results are the same for meetings with a duration,
+   * as long as the indexed events lie within the day.
+   */
+  public Collection<TimeRange> query(CalendarIndex index, MeetingRequest request) {
+    long meetingDuration = request.getDuration();
+    Collection<TimeRange> freeSlots = new ArrayList<>();
+    if (meetingDuration > MINUTES_PER_DAY) {
+      return freeSlots;
+    }
+
+    List<int[]> requiredBusy = getBusyIntervals(index, request.getAttendees());
+    List<int[]> busy = new ArrayList<>(requiredBusy);
+    busy.addAll(getBusyIntervals(index, request.getOptionalAttendees()));
+    if (busy.isEmpty()) {
+      freeSlots.add(TimeRange.WHOLE_DAY);
+      return freeSlots;
+    }
+    findFreeSlots(busy, meetingDuration, freeSlots);
+    if (freeSlots.isEmpty()) {
+      if (requiredBusy.isEmpty()) {
+        freeSlots.add(TimeRange.WHOLE_DAY);
+      } else {
+        findFreeSlots(requiredBusy, meetingDuration, freeSlots);
+      }
+    }
+    return freeSlots;
+  }
+
+  /** Returns the busy intervals of the attendees that are busy at all. */
+  private static List<int[]> getBusyIntervals(CalendarIndex index, Collection<String> attendees) {
+    List<int[]> busy = new ArrayList<>();
+    for (String attendee : attendees) {
+      int[] intervals = index.getBusyIntervals(attendee);
+      if (intervals.length > 0) {
+        busy.add(intervals);
+      }
+    }
+    return busy;
+  }
+
+  /**
+   * Adds the gaps between the busy intervals of all attendees that fit the meeting, merging their
+   * sorted intervals on the fly.
+   */
+  private static void findFreeSlots(
+      List<int[]> busy, long meetingDuration, Collection<TimeRange> freeSlots) {
+    // The position of the next interval of each attendee.
+    int[] next = new int[busy.size()];
+    int previousEventEnd = TimeRange.START_OF_DAY;
+    while (true) {
+      // Meetings have a handful of attendees, for which a linear scan beats a heap.
+      int first = -1;
+      for (int i = 0; i < next.length; i++) {
+        if (next[i] < busy.get(i).length
+            && (first < 0 || busy.get(i)[next[i]] < busy.get(first)[next[first]])) {
+          first = i;
+        }
+      }
+      if (first < 0) {
+        break;
+      }
+      int start = busy.get(first)[next[first]];
+      int end = busy.get(first)[next[first] + 1];
+      next[first] += 2;
+      if (start > previousEventEnd && start - previousEventEnd >= meetingDuration) {
+        freeSlots.add(TimeRange.fromStartEnd(previousEventEnd, start, false));
+      }
+      previousEventEnd = Math.max(previousEventEnd, end);
+    }
+    if (TimeRange.END_OF_DAY - previousEventEnd >= meetingDuration) {
+      freeSlots.add(TimeRange.fromStartEnd(previousEventEnd, TimeRange.END_OF_DAY, true));
+    }
+  }
+
+  /**
+   * Adds the runs of free minutes in {@code busy} that fit the meeting. Like {@link #sweep}, a run
+   * that lasts until the end of the day has to be one minute longer than the meeting.
+   */
+  private static void findFreeSlots(
+      BitSet busy, long meetingDuration, Collection<TimeRange> freeSlots) {
+    int start = busy.nextClearBit(TimeRange.START_OF_DAY);
+    while (start < MINUTES_PER_DAY) {
+      int end = busy.nextSetBit(start);
+      if (end < 0) {
+        if (TimeRange.END_OF_DAY - start >= meetingDuration) {
+          freeSlots.add(TimeRange.fromStartEnd(start, TimeRange.END_OF_DAY, true));
+        }
+        return;
+      }
+      if (end - start >= meetingDuration) {
+        freeSlots.add(TimeRange.fromStartEnd(start, end, false));
+      }
+      start = busy.nextClearBit(end);
+    }
+  }
+
+  /**
+   * Returns the slots in which all required attendees are free, each with the optional attendees
+   * who can come, ranked by how many can come and then by time. Unlike {@link #query}, optional
+   * attendees are not all dropped when they cannot all come, so the first slots are those that
+   * maximize the number of optional attendees. Meetings have to end by the end of the day.
+   *
+   * <p>A meeting starting at minute {@code t} clashes with a busy interval {@code [s, e)} exactly
+   * if {@code s - duration < t < e}, so every busy interval becomes an interval of start times the
+   * meeting cannot have. One sweep over the sorted boundaries of these intervals tracks who is
+   * blocked, which takes O(E log E) time for E events plus the size of the attending subsets.
+   *
+   * @throws IllegalArgumentException if the meeting has no duration
+   */
+  public List<MeetingSlot> queryMaximizingOptionalAttendees(
+      Collection<Event> events, MeetingRequest request) {
+    long meetingDuration = request.getDuration();
+    if (meetingDuration <= 0) {
+      throw new IllegalArgumentException("duration must be positive");
+    }
+    List<MeetingSlot> slots = new ArrayList<>();
+    if (meetingDuration > MINUTES_PER_DAY) {
+      return slots;
+    }
+    int duration = (int) meetingDuration;
+
+    Collection<String> attendees = request.getAttendees();
+    List<String> optionalAttendees = new ArrayList<>(request.getOptionalAttendees());
+    Map<String, Integer> optionalIndices = new HashMap<>();
+    List<List<TimeRange>> optionalBusy = new ArrayList<>();
+    for (String attendee : optionalAttendees) {
+      optionalIndices.put(attendee, optionalBusy.size());
+      optionalBusy.add(new ArrayList<>());
+    }
+    List<TimeRange> requiredBusy = new ArrayList<>();
+    for (Event event : events) {
+      if (!Collections.disjoint(event.getAttendees(), attendees)) {
+        requiredBusy.add(event.getWhen());
+      }
+      for (String attendee : event.getAttendees()) {
+        Integer index = optionalIndices.get(attendee);
+        if (index != null) {
+          optionalBusy.get(index).add(event.getWhen());
+        }
+      }
+    }
+
+    // Each boundary is {start time, optional attendee index or -1 for required, +1 or -1}.
+    List<int[]> boundaries = new ArrayList<>();
+    addBlockedStarts(requiredBusy, duration, -1, boundaries);
+    for (int i = 0; i < optionalBusy.size(); i++) {
+      addBlockedStarts(optionalBusy.get(i), duration, i, boundaries);
+    }
+    boundaries.sort(Comparator.comparingInt(boundary -> boundary[0]));
+
+    boolean[] blocked = new boolean[optionalAttendees.size()];
+    int requiredBlocked = 0;
+    int next = 0;
+    int lastStart = MINUTES_PER_DAY - duration;
+    int start = TimeRange.START_OF_DAY;
+    while (start <= lastStart) {
+      for (; next < boundaries.size() && boundaries.get(next)[0] <= start; next++) {
+        int[] boundary = boundaries.get(next);
+        if (boundary[1] < 0) {
+          requiredBlocked += boundary[2];
+        } else {
+          blocked[boundary[1]] = boundary[2] > 0;
+        }
+      }
+      int end =
+          next < boundaries.size()
+              ? Math.min(boundaries.get(next)[0], lastStart + 1)
+              : lastStart + 1;
+      if (requiredBlocked == 0) {
+        List<String> attending = new ArrayList<>();
+        for (int i = 0; i < blocked.length; i++) {
+          if (!blocked[i]) {
+            attending.add(optionalAttendees.get(i));
+          }
+        }
+        // Meetings starting anywhere from start to end - 1 fit, which together span this range.
+        slots.add(
+            new MeetingSlot(TimeRange.fromStartEnd(start, end - 1 + duration, false), attending));
+      }
+      start = end;
+    }
+
+    // The sort is stable, so slots with as many optional attendees stay in order of time.
+    slots.sort(
+        Comparator.comparingInt((MeetingSlot slot) -> slot.getOptionalAttendees().size())
+            .reversed());
+    return slots;
+  }
+
+  /**
+   * Adds the boundaries of the start times at which a meeting would clash with the busy time of one
+   * attendee, or of the required attendees if {@code who} is -1. Clashes of one attendee with
+   * several events are merged first so that every attendee is blocked at most once at a time.
+   */
+  private static void addBlockedStarts(
+      List<TimeRange> busy, int duration, int who, List<int[]> boundaries) {
+    busy.sort(TimeRange.ORDER_BY_START);
+    int blockedFrom = 0;
+    int blockedUntil = Integer.MIN_VALUE;
+    for (TimeRange when : busy) {
+      if (when.duration() <= 0) {
+        continue;
+      }
+      int from = when.start() - duration + 1;
+      if (from > blockedUntil) {
+        if (blockedUntil > Integer.MIN_VALUE) {
+          boundaries.add(new int[] {blockedFrom, who, 1});
+          boundaries.add(new int[] {blockedUntil, who, -1});
+        }
+        blockedFrom = from;
+      }
+      blockedUntil = Math.max(blockedUntil, when.end());
+    }
+    if (blockedUntil > Integer.MIN_VALUE) {
+      boundaries.add(new int[] {blockedFrom, who, 1});
+      boundaries.add(new int[] {blockedUntil, who, -1});
+    }
+  }
+
+  /**
+   * Finds the free slots by sweeping over the blocking events in order of their start times. This
+   * is the original implementation, kept for the calendars {@link #query} cannot represent.
+   */
+  static Collection<TimeRange> sweep(Collection<Event> events, MeetingRequest request) {
     Collection<String> attendees = request.getAttendees();
     Collection<String> optionalAttendees = request.getOptionalAttendees();
     PriorityQueue<TimeRange> blockingEvents = new PriorityQueue<>(TimeRange.ORDER_BY_START);
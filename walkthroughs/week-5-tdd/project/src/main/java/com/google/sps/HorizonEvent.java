@@ -0,0 +1,81 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A calendar event on a multi-day horizon, during which its attendees are busy. Like {@code Event},
+ * but placed with an {@code EpochRange} instead of minutes of a single day. Events are read-only.
+ */
+public final class HorizonEvent {
+  private final String title;
+  private final EpochRange when;
+  private final Set<String> attendees = new HashSet<>();
+
+  /**
+   * Creates a new event.
+   *
+   * @param title The human-readable name for the event. Must be non-null.
+   * @param when The time when the event takes place. Must be non-null.
+   * @param attendees The collection of people attending the event. Must be non-null.
+   */
+  public HorizonEvent(String title, EpochRange when, Collection<String> attendees) {
+    if (title == null) {
+      throw new IllegalArgumentException("title cannot be null");
+    }
+
+    if (when == null) {
+      throw new IllegalArgumentException("when cannot be null");
+    }
+
+    if (attendees == null) {
+      throw new IllegalArgumentException("attendees cannot be null. Use empty array instead.");
+    }
+
+    this.title = title;
+    this.when = when;
+    this.attendees.addAll(attendees);
+  }
+
+  /**
+   * Returns the human-readable name for this event.
+   */
+  public String getTitle() {
+    return title;
+  }
+
+  /**
+   * Returns the {@code EpochRange} for when this event occurs.
+   */
+  public EpochRange getWhen() {
+    return when;
+  }
+
+  /**
+   * Returns a read-only set of attendees for this event.
+   */
+  public Set<String> getAttendees() {
+    return Collections.unmodifiableSet(attendees);
+  }
+
+  @Override
+  public String toString() {
+    return title + " " + when;
+  }
+}
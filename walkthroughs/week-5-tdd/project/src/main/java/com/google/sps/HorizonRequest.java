@@ -0,0 +1,105 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * A request for a meeting somewhere within a window of whole weeks, which, unlike a
+ * {@code MeetingRequest}, may last longer than a day. Attendees with working hours can only meet
+ * during them; attendees without can meet at any time.
+ */
+public final class HorizonRequest {
+  private static final long MINUTES_PER_WEEK = 7 * 24 * 60;
+
+  // All the people that should be attending this new meeting. Use a set to avoid duplicates.
+  private final Collection<String> attendees = new HashSet<>();
+
+  private final Map<String, WorkingHours> workingHours = new HashMap<>();
+
+  // The duration of the meeting in minutes.
+  private final long duration;
+
+  private final EpochRange window;
+
+  /**
+   * Creates a new request.
+   *
+   * @param attendees The people who must attend the meeting. Must be non-null.
+   * @param duration The duration of the meeting in minutes.
+   * @param windowStart The earliest time the meeting may start. Must be non-null.
+   * @param weeks The number of weeks after {@code windowStart} by which the meeting must end. Must
+   *     be positive.
+   */
+  public HorizonRequest(
+      Collection<String> attendees, long duration, Instant windowStart, int weeks) {
+    if (attendees == null) {
+      throw new IllegalArgumentException("attendees cannot be null. Use empty array instead.");
+    }
+
+    if (windowStart == null) {
+      throw new IllegalArgumentException("windowStart cannot be null");
+    }
+
+    if (weeks <= 0) {
+      throw new IllegalArgumentException("weeks must be positive");
+    }
+
+    this.attendees.addAll(attendees);
+    this.duration = duration;
+    long start = EpochRange.toEpochMinute(windowStart);
+    this.window = EpochRange.fromStartDuration(start, weeks * MINUTES_PER_WEEK);
+  }
+
+  /**
+   * Returns a read-only copy of the people who are required to attend this meeting.
+   */
+  public Collection<String> getAttendees() {
+    return Collections.unmodifiableCollection(attendees);
+  }
+
+  /**
+   * Sets the hours during which {@code attendee} can meet.
+   */
+  public void setWorkingHours(String attendee, WorkingHours hours) {
+    workingHours.put(attendee, hours);
+  }
+
+  /**
+   * Returns the hours during which {@code attendee} can meet, or null if they can meet at any time.
+   */
+  public WorkingHours getWorkingHours(String attendee) {
+    return workingHours.get(attendee);
+  }
+
+  /**
+   * Returns the duration of the meeting in minutes.
+   */
+  public long getDuration() {
+    return duration;
+  }
+
+  /**
+   * Returns the time within which the whole meeting must take place.
+   */
+  public EpochRange getWindow() {
+    return window;
+  }
+}
@@ -0,0 +1,82 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * MeetingSlot is a time range in which a meeting can be held, together with the optional attendees
+ * who are free for the whole meeting wherever it is placed within the range.
+ */
+public final class MeetingSlot {
+  private final TimeRange when;
+  private final Set<String> optionalAttendees = new HashSet<>();
+
+  /**
+   * Creates a new slot.
+   *
+   * @param when The time range the meeting can be placed in. Must be non-null.
+   * @param optionalAttendees The optional attendees who can come. Must be non-null.
+   */
+  public MeetingSlot(TimeRange when, Collection<String> optionalAttendees) {
+    if (when == null) {
+      throw new IllegalArgumentException("when cannot be null");
+    }
+
+    if (optionalAttendees == null) {
+      throw new IllegalArgumentException(
+          "optionalAttendees cannot be null. Use empty array instead.");
+    }
+
+    this.when = when;
+    this.optionalAttendees.addAll(optionalAttendees);
+  }
+
+  /**
+   * Returns the {@code TimeRange} the meeting can be placed in.
+   */
+  public TimeRange getWhen() {
+    return when;
+  }
+
+  /**
+   * Returns a read-only set of the optional attendees who can come.
+   */
+  public Set<String> getOptionalAttendees() {
+    return Collections.unmodifiableSet(optionalAttendees);
+  }
+
+  @Override
+  public int hashCode() {
+    return when.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof MeetingSlot && equals(this, (MeetingSlot) other);
+  }
+
+  private static boolean equals(MeetingSlot a, MeetingSlot b) {
+    return a.when.equals(b.when) && a.optionalAttendees.equals(b.optionalAttendees);
+  }
+
+  @Override
+  public String toString() {
+    return when + " with " + optionalAttendees;
+  }
+}
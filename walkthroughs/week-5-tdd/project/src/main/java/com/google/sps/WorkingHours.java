@@ -0,0 +1,179 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The hours an attendee works, in their own timezone: from {@code start} to {@code end} local time
+ * on each of their working days. Shifts whose end is not after their start run overnight and end
+ * the next day. Daylight saving time changes are applied as the attendee's clock sees them, so a
+ * 9:00 start stays at 9:00 local time all year.
+ */
+public final class WorkingHours {
+  private final ZoneId zone;
+  private final LocalTime start;
+  private final LocalTime end;
+  private final Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+
+  /**
+   * Creates working hours.
+   *
+   * @param zone The timezone the attendee works in. Must be non-null.
+   * @param start The local time work starts at. Must be non-null.
+   * @param end The local time work ends at, the next day if not after {@code start}. Must be
+   *     non-null and different from {@code start}.
+   * @param days The days of the week the attendee works, by the day their shift starts. Must be
+   *     non-null.
+   */
+  public WorkingHours(ZoneId zone, LocalTime start, LocalTime end, Collection<DayOfWeek> days) {
+    if (zone == null) {
+      throw new IllegalArgumentException("zone cannot be null");
+    }
+
+    if (start == null || end == null) {
+      throw new IllegalArgumentException("start and end cannot be null");
+    }
+
+    if (start.equals(end)) {
+      throw new IllegalArgumentException("start and end cannot be the same time");
+    }
+
+    if (days == null) {
+      throw new IllegalArgumentException("days cannot be null. Use empty array instead.");
+    }
+
+    this.zone = zone;
+    this.start = start;
+    this.end = end;
+    this.days.addAll(days);
+  }
+
+  /**
+   * Returns the timezone the attendee works in.
+   */
+  public ZoneId getZone() {
+    return zone;
+  }
+
+  /**
+   * Returns the local time work starts at.
+   */
+  public LocalTime getStart() {
+    return start;
+  }
+
+  /**
+   * Returns the local time work ends at.
+   */
+  public LocalTime getEnd() {
+    return end;
+  }
+
+  /**
+   * Returns a read-only set of the days of the week the attendee works.
+   */
+  public Set<DayOfWeek> getDays() {
+    return Collections.unmodifiableSet(days);
+  }
+
+  /**
+   * Returns the times within {@code window} that are outside of these working hours, ordered by
+   * start. They are computed a day at a time as the iterator advances, so iterating over a long
+   * window keeps only the current day in memory.
+   */
+  Iterator<EpochRange> getOffHours(EpochRange window) {
+    return new OffHoursIterator(window);
+  }
+
+  private final class OffHoursIterator implements Iterator<EpochRange> {
+    private final EpochRange window;
+
+    // The local day whose shift is looked at next.
+    private LocalDate date;
+
+    // The start of the time off that is not yet returned, or the end of the window once done.
+    private long offStart;
+
+    private EpochRange next;
+
+    private OffHoursIterator(EpochRange window) {
+      this.window = window;
+      this.offStart = window.start();
+      // Start a day early in case an overnight shift reaches into the window.
+      this.date =
+          EpochRange.toInstant(window.start()).atZone(zone).toLocalDate().minusDays(1);
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next == null) {
+        next = computeNext();
+      }
+      return next != null;
+    }
+
+    @Override
+    public EpochRange next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      EpochRange result = next;
+      next = null;
+      return result;
+    }
+
+    private EpochRange computeNext() {
+      while (offStart < window.end()) {
+        if (toEpochMinute(date, LocalTime.MIDNIGHT) >= window.end()) {
+          // No later shift can start within the window.
+          EpochRange offHours = EpochRange.fromStartEnd(offStart, window.end());
+          offStart = window.end();
+          return offHours;
+        }
+
+        LocalDate shiftDate = date;
+        date = date.plusDays(1);
+        if (!days.contains(shiftDate.getDayOfWeek())) {
+          continue;
+        }
+        long shiftStart = toEpochMinute(shiftDate, start);
+        long shiftEnd = toEpochMinute(end.isAfter(start) ? shiftDate : shiftDate.plusDays(1), end);
+        if (shiftStart > offStart) {
+          EpochRange offHours =
+              EpochRange.fromStartEnd(offStart, Math.min(shiftStart, window.end()));
+          offStart = Math.max(offStart, shiftEnd);
+          return offHours;
+        }
+        offStart = Math.max(offStart, shiftEnd);
+      }
+      return null;
+    }
+
+    private long toEpochMinute(LocalDate date, LocalTime time) {
+      return EpochRange.toEpochMinute(ZonedDateTime.of(date, time, zone).toInstant());
+    }
+  }
+}
@@ -14,6 +14,7 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.CalendarIndex;
 import com.google.sps.Events;
 import com.google.sps.FindMeetingQuery;
 import com.google.sps.MeetingRequest;
@@ -29,6 +30,14 @@ import javax.servlet.http.HttpServletResponse;
 
 @WebServlet("/query")
 public class QueryServlet extends HttpServlet {
+  private CalendarIndex calendarIndex;
+
+  @Override
+  public void init() {
+    // Index the calendar once instead of scanning every event on every query.
+    calendarIndex = new CalendarIndex(Arrays.asList(Events.events));
+  }
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     Gson gson = new Gson();
@@ -38,8 +47,7 @@ public class QueryServlet extends HttpServlet {
 
     // Find the possible meeting times.
     FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
-    Collection<TimeRange> answer =
-        findMeetingQuery.query(Arrays.asList(Events.events), meetingRequest);
+    Collection<TimeRange> answer = findMeetingQuery.query(calendarIndex, meetingRequest);
 
     // Convert the times to JSON
     String jsonResponse = gson.toJson(answer);
@@ -0,0 +1,123 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class CalendarIndexTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+  private static final int TIME_1100AM = TimeRange.getTimeInMinutes(11, 0);
+
+  @Test
+  public void mergesOverlappingAndAdjacentEvents() {
+    // Events  : |--1--|
+    //              |--2--|--3--|      |--4--|
+    // Busy    : |--------------|      |-----|
+    CalendarIndex index =
+        new CalendarIndex(
+            Arrays.asList(
+                new Event(
+                    "Event 1",
+                    TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+                    Arrays.asList(PERSON_A)),
+                new Event(
+                    "Event 2",
+                    TimeRange.fromStartDuration(TIME_0800AM + 30, 60),
+                    Arrays.asList(PERSON_A, PERSON_B)),
+                new Event(
+                    "Event 3",
+                    TimeRange.fromStartEnd(TIME_0900AM + 30, TIME_1000AM, false),
+                    Arrays.asList(PERSON_A)),
+                new Event(
+                    "Event 4",
+                    TimeRange.fromStartDuration(TIME_1100AM, 30),
+                    Arrays.asList(PERSON_A))));
+
+    Assert.assertArrayEquals(
+        new int[] {TIME_0800AM, TIME_1000AM, TIME_1100AM, TIME_1100AM + 30},
+        index.getBusyIntervals(PERSON_A));
+    Assert.assertArrayEquals(
+        new int[] {TIME_0800AM + 30, TIME_0900AM + 30}, index.getBusyIntervals(PERSON_B));
+  }
+
+  @Test
+  public void removingAnEventFreesOnlyItsOwnTime() {
+    // Two events cover the same time, so removing one of them must not free it.
+    Event first =
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, 60), Arrays.asList(PERSON_A));
+    Event second =
+        new Event(
+            "Event 2", TimeRange.fromStartDuration(TIME_0800AM, 120), Arrays.asList(PERSON_A));
+    CalendarIndex index = new CalendarIndex(Collections.emptyList());
+    index.add(first);
+    index.add(second);
+
+    Assert.assertTrue(index.remove(second));
+    Assert.assertArrayEquals(
+        new int[] {TIME_0800AM, TIME_0900AM}, index.getBusyIntervals(PERSON_A));
+
+    Assert.assertTrue(index.remove(first));
+    Assert.assertArrayEquals(new int[0], index.getBusyIntervals(PERSON_A));
+  }
+
+  @Test
+  public void cannotRemoveEventThatWasNotAdded() {
+    CalendarIndex index =
+        new CalendarIndex(
+            Arrays.asList(
+                new Event(
+                    "Event 1",
+                    TimeRange.fromStartDuration(TIME_0800AM, 60),
+                    Arrays.asList(PERSON_A))));
+    Event other =
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0800AM, 60), Arrays.asList(PERSON_A));
+
+    Assert.assertFalse(index.remove(other));
+    Assert.assertArrayEquals(
+        new int[] {TIME_0800AM, TIME_0900AM}, index.getBusyIntervals(PERSON_A));
+  }
+
+  @Test
+  public void removeEventWithoutBusyTimeAfterOthers() {
+    // Events without duration are indexed but are no busy time, so they may outlive their
+    // attendee's busy time.
+    Event zero =
+        new Event("Event 1", TimeRange.fromStartDuration(TIME_0800AM, 0), Arrays.asList(PERSON_A));
+    Event busy =
+        new Event("Event 2", TimeRange.fromStartDuration(TIME_0900AM, 60), Arrays.asList(PERSON_A));
+    CalendarIndex index = new CalendarIndex(Arrays.asList(zero, busy));
+
+    Assert.assertTrue(index.remove(busy));
+    Assert.assertTrue(index.remove(zero));
+    Assert.assertFalse(index.remove(zero));
+    Assert.assertArrayEquals(new int[0], index.getBusyIntervals(PERSON_A));
+
+    index.add(busy);
+    Assert.assertArrayEquals(
+        new int[] {TIME_0900AM, TIME_1000AM}, index.getBusyIntervals(PERSON_A));
+  }
+}
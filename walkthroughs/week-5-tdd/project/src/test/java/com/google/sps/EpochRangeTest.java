@@ -0,0 +1,56 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.time.Instant;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EpochRangeTest {
+
+  @Test
+  public void instantsAreRoundedDownToTheMinute() {
+    Assert.assertEquals(0, EpochRange.toEpochMinute(Instant.parse("1970-01-01T00:00:59Z")));
+    Assert.assertEquals(-1, EpochRange.toEpochMinute(Instant.parse("1969-12-31T23:59:01Z")));
+
+    EpochRange actual =
+        EpochRange.fromInstants(
+            Instant.parse("2020-01-06T09:00:30Z"), Instant.parse("2020-01-06T10:00:00Z"));
+
+    Assert.assertEquals(60, actual.duration());
+    Assert.assertEquals(
+        Instant.parse("2020-01-06T09:00:00Z"), EpochRange.toInstant(actual.start()));
+  }
+
+  @Test
+  public void touchingRangesDoNotOverlap() {
+    EpochRange first = EpochRange.fromStartEnd(100, 200);
+    EpochRange second = EpochRange.fromStartEnd(200, 300);
+
+    Assert.assertFalse(first.overlaps(second));
+    Assert.assertTrue(first.overlaps(EpochRange.fromStartDuration(199, 2)));
+    Assert.assertTrue(first.contains(EpochRange.fromStartEnd(150, 200)));
+    Assert.assertFalse(first.contains(EpochRange.fromStartEnd(150, 201)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void endBeforeStartIsRejected() {
+    EpochRange.fromStartEnd(200, 100);
+  }
+}
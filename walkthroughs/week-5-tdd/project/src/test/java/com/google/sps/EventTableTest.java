@@ -0,0 +1,75 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class EventTableTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+
+  @Test
+  public void storesEventsLosslessly() {
+    EventTable table = new EventTable(Collections.emptyList());
+    Event[] events = new Event[100];
+    for (int i = 0; i < events.length; i++) {
+      events[i] =
+          new Event(
+              "Event " + i,
+              TimeRange.fromStartDuration(TIME_0800AM + i, 30),
+              i % 2 == 0 ? Arrays.asList(PERSON_A, PERSON_B) : Arrays.asList(PERSON_C));
+      table.add(events[i]);
+    }
+
+    Assert.assertEquals(events.length, table.size());
+    for (int i = 0; i < events.length; i++) {
+      Assert.assertEquals(TIME_0800AM + i, table.getStart(i));
+      Assert.assertEquals(30, table.getDuration(i));
+      Assert.assertEquals(events[i], table.getEvent(i));
+    }
+  }
+
+  @Test
+  public void involvesAnyIntersectsAttendees() {
+    EventTable table =
+        new EventTable(
+            Arrays.asList(
+                new Event(
+                    "Event 1",
+                    TimeRange.fromStartDuration(TIME_0800AM, 30),
+                    Arrays.asList(PERSON_A, PERSON_C)),
+                new Event(
+                    "Event 2",
+                    TimeRange.fromStartDuration(TIME_0800AM, 30),
+                    Collections.emptyList())));
+    AttendeeDictionary dictionary = table.getDictionary();
+    dictionary.intern(PERSON_B);
+
+    Assert.assertTrue(table.involvesAny(0, dictionary.findAll(Arrays.asList(PERSON_C))));
+    Assert.assertTrue(table.involvesAny(0, dictionary.findAll(Arrays.asList(PERSON_B, PERSON_A))));
+    Assert.assertFalse(table.involvesAny(0, dictionary.findAll(Arrays.asList(PERSON_B))));
+    Assert.assertFalse(table.involvesAny(1, dictionary.findAll(Arrays.asList(PERSON_A))));
+  }
+}
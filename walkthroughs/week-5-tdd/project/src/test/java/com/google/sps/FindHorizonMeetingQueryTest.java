@@ -0,0 +1,303 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class FindHorizonMeetingQueryTest {
+  private static final Collection<HorizonEvent> NO_EVENTS = Collections.emptySet();
+  private static final Collection<String> NO_ATTENDEES = Collections.emptySet();
+
+  // Some people that we can use in our tests.
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+
+  private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+  private static final ZoneId LONDON = ZoneId.of("Europe/London");
+
+  private static final LocalTime TIME_0900AM = LocalTime.of(9, 0);
+  private static final LocalTime TIME_0500PM = LocalTime.of(17, 0);
+
+  private static final List<DayOfWeek> WEEKDAYS =
+      Arrays.asList(
+          DayOfWeek.MONDAY,
+          DayOfWeek.TUESDAY,
+          DayOfWeek.WEDNESDAY,
+          DayOfWeek.THURSDAY,
+          DayOfWeek.FRIDAY);
+
+  // Monday 2020-01-06, when neither New York nor London observe daylight saving time.
+  private static final Instant MONDAY = Instant.parse("2020-01-06T00:00:00Z");
+
+  private static final int DURATION_1_HOUR = 60;
+  private static final int DURATION_1_DAY = 24 * 60;
+  private static final int DURATION_1_WEEK = 7 * DURATION_1_DAY;
+
+  private FindHorizonMeetingQuery query;
+
+  @Before
+  public void setUp() {
+    query = new FindHorizonMeetingQuery();
+  }
+
+  @Test
+  public void noAttendeesGetTheWholeWindow() {
+    HorizonRequest request = new HorizonRequest(NO_ATTENDEES, DURATION_1_HOUR, MONDAY, 2);
+
+    Collection<EpochRange> actual = query.query(NO_EVENTS, request);
+    Collection<EpochRange> expected =
+        Arrays.asList(
+            EpochRange.fromStartDuration(EpochRange.toEpochMinute(MONDAY), 2 * DURATION_1_WEEK));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void meetingsCanLastSeveralDays() {
+    // A three day offsite only fits after Person A's event on Wednesday.
+    //
+    // Events  :        |--A--|
+    // Week    : |-------------------------|
+    // Options :              |-----1------|
+
+    Collection<HorizonEvent> events =
+        Arrays.asList(
+            new HorizonEvent(
+                "Event 1",
+                range("2020-01-08T10:00:00Z", "2020-01-08T11:00:00Z"),
+                Arrays.asList(PERSON_A)),
+            new HorizonEvent(
+                "Event 2",
+                range("2020-01-07T10:00:00Z", "2020-01-07T11:00:00Z"),
+                Arrays.asList(PERSON_B)));
+
+    HorizonRequest request =
+        new HorizonRequest(Arrays.asList(PERSON_A), 3 * DURATION_1_DAY, MONDAY, 1);
+
+    Collection<EpochRange> actual = query.query(events, request);
+    Collection<EpochRange> expected =
+        Arrays.asList(range("2020-01-08T11:00:00Z", "2020-01-13T00:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void workingHoursOverlapAcrossTimezones() {
+    // Working 9 to 5 in New York and in London overlaps from 14:00 to 17:00 UTC every weekday.
+    // Person A is busy on Tuesday from 15:00 to 16:00 UTC.
+
+    Collection<HorizonEvent> events =
+        Arrays.asList(
+            new HorizonEvent(
+                "Event 1",
+                range("2020-01-07T15:00:00Z", "2020-01-07T16:00:00Z"),
+                Arrays.asList(PERSON_A)));
+
+    HorizonRequest request =
+        new HorizonRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_1_HOUR, MONDAY, 1);
+    request.setWorkingHours(
+        PERSON_A, new WorkingHours(NEW_YORK, TIME_0900AM, TIME_0500PM, WEEKDAYS));
+    request.setWorkingHours(PERSON_B, new WorkingHours(LONDON, TIME_0900AM, TIME_0500PM, WEEKDAYS));
+
+    Collection<EpochRange> actual = query.query(events, request);
+    Collection<EpochRange> expected =
+        Arrays.asList(
+            range("2020-01-06T14:00:00Z", "2020-01-06T17:00:00Z"),
+            range("2020-01-07T14:00:00Z", "2020-01-07T15:00:00Z"),
+            range("2020-01-07T16:00:00Z", "2020-01-07T17:00:00Z"),
+            range("2020-01-08T14:00:00Z", "2020-01-08T17:00:00Z"),
+            range("2020-01-09T14:00:00Z", "2020-01-09T17:00:00Z"),
+            range("2020-01-10T14:00:00Z", "2020-01-10T17:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void overlapMovesWhenOnlyOneTimezoneChangesClocks() {
+    // New York starts daylight saving time on 2020-03-08, London not until 2020-03-29, so the
+    // overlap starts an hour earlier in the second week.
+
+    HorizonRequest request =
+        new HorizonRequest(
+            Arrays.asList(PERSON_A, PERSON_B),
+            3 * DURATION_1_HOUR,
+            Instant.parse("2020-03-02T00:00:00Z"),
+            2);
+    request.setWorkingHours(
+        PERSON_A,
+        new WorkingHours(NEW_YORK, TIME_0900AM, TIME_0500PM, Arrays.asList(DayOfWeek.MONDAY)));
+    request.setWorkingHours(
+        PERSON_B,
+        new WorkingHours(LONDON, TIME_0900AM, TIME_0500PM, Arrays.asList(DayOfWeek.MONDAY)));
+
+    Collection<EpochRange> actual = query.query(NO_EVENTS, request);
+    Collection<EpochRange> expected =
+        Arrays.asList(
+            range("2020-03-02T14:00:00Z", "2020-03-02T17:00:00Z"),
+            range("2020-03-09T13:00:00Z", "2020-03-09T17:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void eventsAfterTheWindowAreNotRead() {
+    // The stream is out of order after the window, which is never noticed because it is not read.
+    List<HorizonEvent> events =
+        Arrays.asList(
+            new HorizonEvent(
+                "Event 1",
+                range("2020-01-06T10:00:00Z", "2020-01-06T11:00:00Z"),
+                Arrays.asList(PERSON_A)),
+            new HorizonEvent(
+                "Event 2",
+                range("2020-01-14T10:00:00Z", "2020-01-14T11:00:00Z"),
+                Arrays.asList(PERSON_A)),
+            new HorizonEvent(
+                "Event 3",
+                range("2020-01-06T12:00:00Z", "2020-01-06T13:00:00Z"),
+                Arrays.asList(PERSON_A)));
+
+    HorizonRequest request =
+        new HorizonRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR, MONDAY, 1);
+
+    List<EpochRange> actual = new ArrayList<>();
+    query.query(events.iterator(), request, actual::add);
+    List<EpochRange> expected =
+        Arrays.asList(
+            range("2020-01-06T00:00:00Z", "2020-01-06T10:00:00Z"),
+            range("2020-01-06T11:00:00Z", "2020-01-13T00:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unorderedEventStreamIsRejected() {
+    List<HorizonEvent> events =
+        Arrays.asList(
+            new HorizonEvent(
+                "Event 1",
+                range("2020-01-07T10:00:00Z", "2020-01-07T11:00:00Z"),
+                Arrays.asList(PERSON_A)),
+            new HorizonEvent(
+                "Event 2",
+                range("2020-01-06T10:00:00Z", "2020-01-06T11:00:00Z"),
+                Arrays.asList(PERSON_A)));
+
+    HorizonRequest request =
+        new HorizonRequest(Arrays.asList(PERSON_A), DURATION_1_HOUR, MONDAY, 1);
+
+    query.query(events.iterator(), request, slot -> {});
+  }
+
+  @Test
+  public void sameAsCheckingEveryMinute() {
+    List<ZoneId> zones = Arrays.asList(NEW_YORK, LONDON, ZoneId.of("Asia/Kolkata"));
+    Random random = new Random(5);
+    for (int i = 0; i < 50; i++) {
+      Instant windowStart = MONDAY.plusSeconds(60L * random.nextInt(DURATION_1_WEEK));
+      HorizonRequest request =
+          new HorizonRequest(
+              Arrays.asList(PERSON_A, PERSON_B), 1 + random.nextInt(300), windowStart, 1);
+      WorkingHours hours =
+          new WorkingHours(
+              zones.get(random.nextInt(zones.size())),
+              LocalTime.of(random.nextInt(24), 0),
+              LocalTime.of(random.nextInt(24), 30),
+              random.nextBoolean() ? WEEKDAYS : EnumSet.allOf(DayOfWeek.class));
+      request.setWorkingHours(PERSON_A, hours);
+
+      // Events may start up to a day before the window and end after it.
+      long windowFrom = EpochRange.toEpochMinute(windowStart);
+      EpochRange span =
+          EpochRange.fromStartDuration(
+              windowFrom - DURATION_1_DAY, DURATION_1_WEEK + DURATION_1_DAY);
+      List<HorizonEvent> events = RandomCalendars.horizonEvents(random, 20, span, DURATION_1_DAY);
+
+      // Mark every minute of the window in which someone is busy or Person A is not working.
+      boolean[] busy = new boolean[DURATION_1_WEEK];
+      for (int minute = 0; minute < busy.length; minute++) {
+        busy[minute] = !isWorking(hours, windowFrom + minute);
+      }
+      for (HorizonEvent event : events) {
+        if (!Collections.disjoint(event.getAttendees(), request.getAttendees())) {
+          for (long minute = event.getWhen().start(); minute < event.getWhen().end(); minute++) {
+            if (minute >= windowFrom && minute < windowFrom + busy.length) {
+              busy[(int) (minute - windowFrom)] = true;
+            }
+          }
+        }
+      }
+      List<EpochRange> expected = new ArrayList<>();
+      for (int from = 0; from < busy.length; ) {
+        int to = from;
+        while (to < busy.length && !busy[to]) {
+          to++;
+        }
+        if (to - from >= request.getDuration()) {
+          expected.add(EpochRange.fromStartEnd(windowFrom + from, windowFrom + to));
+        }
+        from = to + 1;
+      }
+
+      Assert.assertEquals(expected, query.query(events, request));
+    }
+  }
+
+  /** Returns whether a shift that started on the minute's local day or the day before covers it. */
+  private static boolean isWorking(WorkingHours hours, long minute) {
+    Instant instant = EpochRange.toInstant(minute);
+    ZonedDateTime local = instant.atZone(hours.getZone());
+    for (int daysBefore = 0; daysBefore <= 1; daysBefore++) {
+      ZonedDateTime day = local.minusDays(daysBefore);
+      if (!hours.getDays().contains(day.getDayOfWeek())) {
+        continue;
+      }
+      ZonedDateTime start = ZonedDateTime.of(day.toLocalDate(), hours.getStart(), hours.getZone());
+      ZonedDateTime end =
+          ZonedDateTime.of(
+              hours.getEnd().isAfter(hours.getStart())
+                  ? day.toLocalDate()
+                  : day.toLocalDate().plusDays(1),
+              hours.getEnd(),
+              hours.getZone());
+      if (!instant.isBefore(start.toInstant()) && instant.isBefore(end.toInstant())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static EpochRange range(String start, String end) {
+    return EpochRange.fromInstants(Instant.parse(start), Instant.parse(end));
+  }
+}
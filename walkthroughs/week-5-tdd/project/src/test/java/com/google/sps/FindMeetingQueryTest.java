@@ -14,9 +14,13 @@
 
 package com.google.sps;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -33,6 +37,7 @@ public final class FindMeetingQueryTest {
   private static final String PERSON_A = "Person A";
   private static final String PERSON_B = "Person B";
   private static final String PERSON_C = "Person C";
+  private static final String PERSON_D = "Person D";
 
   // All dates are the first day of the year 2020.
   private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
@@ -485,4 +490,217 @@ public final class FindMeetingQueryTest {
 
     Assert.assertEquals(expected, actual);
   }
+
+  @Test
+  public void sameOptionsAsSweepOverEvents() {
+    // Compare with the original sweep over many random calendars and requests.
+    List<String> people = RandomCalendars.PEOPLE;
+    Random random = new Random(42);
+    for (int i = 0; i < 2000; i++) {
+      List<Event> events = RandomCalendars.dayEvents(random, 7, true);
+      List<String> attendees = new ArrayList<>();
+      for (String person : people) {
+        if (random.nextInt(3) == 0) {
+          attendees.add(person);
+        }
+      }
+      int maxDuration = random.nextBoolean() ? DURATION_2_HOUR : TimeRange.WHOLE_DAY.duration();
+      MeetingRequest request = new MeetingRequest(attendees, 1 + random.nextInt(maxDuration));
+      for (String person : people) {
+        if (random.nextInt(3) == 0) {
+          request.addOptionalAttendee(person);
+        }
+      }
+
+      Collection<TimeRange> actual = query.query(events, request);
+      Collection<TimeRange> expected = FindMeetingQuery.sweep(events, request);
+
+      Assert.assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void sameOptionsFromIndex() {
+    // Compare with querying the events directly, with some events added to and removed from the
+    // index after it was built.
+    List<String> people = RandomCalendars.PEOPLE;
+    Random random = new Random(7);
+    for (int i = 0; i < 500; i++) {
+      List<Event> events = RandomCalendars.dayEvents(random, 11, false);
+      int eventCount = events.size();
+      CalendarIndex index = new CalendarIndex(events.subList(0, eventCount / 2));
+      for (Event event : events.subList(eventCount / 2, eventCount)) {
+        index.add(event);
+      }
+      Event cancelled =
+          new Event("Cancelled", TimeRange.fromStartDuration(600, 120), Arrays.asList(PERSON_A));
+      index.add(cancelled);
+      index.remove(cancelled);
+
+      MeetingRequest request =
+          new MeetingRequest(
+              people.subList(0, random.nextInt(3)), 1 + random.nextInt(DURATION_2_HOUR));
+      for (String person : people.subList(2, 2 + random.nextInt(3))) {
+        request.addOptionalAttendee(person);
+      }
+
+      Collection<TimeRange> actual = query.query(index, request);
+      Collection<TimeRange> expected = query.query(events, request);
+
+      Assert.assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void sameOptionsFromEventTable() {
+    // Compare with querying the events directly, with requests that also name unknown people and
+    // calendars and requests without duration.
+    List<String> people = RandomCalendars.PEOPLE;
+    Random random = new Random(11);
+    for (int i = 0; i < 500; i++) {
+      List<Event> events = RandomCalendars.dayEvents(random, 11, true);
+      EventTable table = new EventTable(events);
+
+      MeetingRequest request =
+          new MeetingRequest(
+              Arrays.asList(people.get(random.nextInt(people.size())), "Person E"),
+              random.nextInt(8) == 0 ? 0 : 1 + random.nextInt(DURATION_2_HOUR));
+      request.addOptionalAttendee(people.get(random.nextInt(people.size())));
+
+      Collection<TimeRange> actual = query.query(table, request);
+      Collection<TimeRange> expected = query.query(events, request);
+
+      Assert.assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void optionalAttendeesMaximizedInsteadOfDropped() {
+    // Two optional people are busy at different times, so no slot fits both of them. Instead of
+    // dropping both, the slots each of them can make come first.
+    //
+    // Events  :       |--A--|     |--B--|
+    // Day     : |-----------------------------|
+    // Options : |-A,B-|-B---|-A,B-|-A---|-A,B-|
+
+    Collection<Event> events =
+        Arrays.asList(
+            new Event(
+                "Event 1",
+                TimeRange.fromStartDuration(TIME_0800AM, DURATION_30_MINUTES),
+                Arrays.asList(PERSON_A)),
+            new Event(
+                "Event 2",
+                TimeRange.fromStartDuration(TIME_0900AM, DURATION_30_MINUTES),
+                Arrays.asList(PERSON_B)));
+
+    MeetingRequest request = new MeetingRequest(NO_ATTENDEES, DURATION_30_MINUTES);
+    request.addOptionalAttendee(PERSON_A);
+    request.addOptionalAttendee(PERSON_B);
+
+    List<MeetingSlot> actual = query.queryMaximizingOptionalAttendees(events, request);
+    List<MeetingSlot> expected =
+        Arrays.asList(
+            new MeetingSlot(
+                TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+                Arrays.asList(PERSON_A, PERSON_B)),
+            new MeetingSlot(
+                TimeRange.fromStartEnd(TIME_0830AM, TIME_0900AM, false),
+                Arrays.asList(PERSON_A, PERSON_B)),
+            new MeetingSlot(
+                TimeRange.fromStartEnd(TIME_0930AM, TimeRange.END_OF_DAY, true),
+                Arrays.asList(PERSON_A, PERSON_B)),
+            // Slots span from their first possible start to the end of a meeting at their last. A
+            // meeting overlapping an event by a minute on either side clashes with it.
+            new MeetingSlot(
+                TimeRange.fromStartEnd(
+                    TIME_0800AM - DURATION_30_MINUTES + 1,
+                    TIME_0830AM - 1 + DURATION_30_MINUTES,
+                    false),
+                Arrays.asList(PERSON_B)),
+            new MeetingSlot(
+                TimeRange.fromStartEnd(
+                    TIME_0900AM - DURATION_30_MINUTES + 1,
+                    TIME_0930AM - 1 + DURATION_30_MINUTES,
+                    false),
+                Arrays.asList(PERSON_A)));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void maximizingSkipsTimesRequiredAttendeesAreBusy() {
+    // The optional person is busy all day, so they cannot come to any slot of the required person.
+    //
+    // Events  : |--------------B--------------|
+    //                   |--A--|
+    // Day     : |-----------------------------|
+    // Options : |---1---|     |-------2-------|
+
+    Collection<Event> events =
+        Arrays.asList(
+            new Event("Event 1", TimeRange.WHOLE_DAY, Arrays.asList(PERSON_B)),
+            new Event(
+                "Event 2",
+                TimeRange.fromStartDuration(TIME_0830AM, DURATION_30_MINUTES),
+                Arrays.asList(PERSON_A)));
+
+    MeetingRequest request = new MeetingRequest(Arrays.asList(PERSON_A), DURATION_60_MINUTES);
+    request.addOptionalAttendee(PERSON_B);
+
+    List<MeetingSlot> actual = query.queryMaximizingOptionalAttendees(events, request);
+    List<MeetingSlot> expected =
+        Arrays.asList(
+            new MeetingSlot(
+                TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0830AM, false), NO_ATTENDEES),
+            new MeetingSlot(
+                TimeRange.fromStartEnd(TIME_0900AM, TimeRange.END_OF_DAY, true), NO_ATTENDEES));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void maximizingFindsWhoCanComeAtEveryStart() {
+    // Check every possible start of the meeting against the attendees free for its whole duration.
+    List<String> people = RandomCalendars.PEOPLE;
+    Random random = new Random(3);
+    for (int i = 0; i < 200; i++) {
+      List<Event> events = RandomCalendars.dayEvents(random, 9, true);
+      int duration = 1 + random.nextInt(DURATION_2_HOUR);
+      MeetingRequest request = new MeetingRequest(people.subList(0, random.nextInt(2)), duration);
+      for (String person : people.subList(1, people.size())) {
+        request.addOptionalAttendee(person);
+      }
+
+      List<MeetingSlot> slots = query.queryMaximizingOptionalAttendees(events, request);
+      for (int start = 0; start + duration <= TimeRange.WHOLE_DAY.end(); start++) {
+        TimeRange meeting = TimeRange.fromStartDuration(start, duration);
+        Collection<String> free = new ArrayList<>(people);
+        for (Event event : events) {
+          if (event.getWhen().duration() > 0 && event.getWhen().overlaps(meeting)) {
+            free.removeAll(event.getAttendees());
+          }
+        }
+        MeetingSlot slot = null;
+        for (MeetingSlot candidate : slots) {
+          if (candidate.getWhen().start() <= start && candidate.getWhen().contains(meeting)) {
+            Assert.assertNull("Two slots for " + meeting, slot);
+            slot = candidate;
+          }
+        }
+        if (!free.containsAll(request.getAttendees())) {
+          Assert.assertNull(slot);
+        } else {
+          free.retainAll(request.getOptionalAttendees());
+          Assert.assertNotNull(slot);
+          Assert.assertEquals(new HashSet<>(free), slot.getOptionalAttendees());
+        }
+      }
+      for (int j = 1; j < slots.size(); j++) {
+        Assert.assertTrue(
+            slots.get(j - 1).getOptionalAttendees().size()
+                >= slots.get(j).getOptionalAttendees().size());
+      }
+    }
+  }
 }
@@ -0,0 +1,85 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random calendars for the tests that compare the meeting queries with a simpler way of finding the
+ * same answer. Every event is attended by a random group of {@link #PEOPLE}.
+ */
+final class RandomCalendars {
+  static final List<String> PEOPLE =
+      Collections.unmodifiableList(Arrays.asList("Person A", "Person B", "Person C", "Person D"));
+
+  // Events within a day are kept short enough that a handful of them still leave free time.
+  private static final int MAX_DAY_EVENT_DURATION = 300;
+
+  private RandomCalendars() {}
+
+  /**
+   * Returns up to {@code maxCount} events that lie within the day and last 1 to 300 minutes. If
+   * {@code withoutDuration} is true, some of the events have no duration instead.
+   */
+  static List<Event> dayEvents(Random random, int maxCount, boolean withoutDuration) {
+    List<Event> events = new ArrayList<>();
+    int count = random.nextInt(maxCount + 1);
+    for (int i = 0; i < count; i++) {
+      int start = random.nextInt(TimeRange.WHOLE_DAY.duration());
+      int maxDuration = Math.min(MAX_DAY_EVENT_DURATION, TimeRange.WHOLE_DAY.end() - start);
+      int duration =
+          withoutDuration && random.nextInt(8) == 0 ? 0 : 1 + random.nextInt(maxDuration);
+      events.add(
+          new Event("Event " + i, TimeRange.fromStartDuration(start, duration), attendees(random)));
+    }
+    return events;
+  }
+
+  /**
+   * Returns {@code count} events that start within {@code span} and last 1 to {@code maxDuration}
+   * minutes, so they may run past its end.
+   */
+  static List<HorizonEvent> horizonEvents(
+      Random random, int count, EpochRange span, int maxDuration) {
+    List<HorizonEvent> events = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      long start = span.start() + random.nextInt((int) span.duration());
+      events.add(
+          new HorizonEvent(
+              "Event " + i,
+              EpochRange.fromStartDuration(start, 1 + random.nextInt(maxDuration)),
+              attendees(random)));
+    }
+    return events;
+  }
+
+  /** Returns a random group of at least one of {@link #PEOPLE}. */
+  static List<String> attendees(Random random) {
+    List<String> attendees = new ArrayList<>();
+    for (String person : PEOPLE) {
+      if (random.nextBoolean()) {
+        attendees.add(person);
+      }
+    }
+    if (attendees.isEmpty()) {
+      attendees.add(PEOPLE.get(random.nextInt(PEOPLE.size())));
+    }
+    return attendees;
+  }
+}
@@ -0,0 +1,132 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** */
+@RunWith(JUnit4.class)
+public final class WorkingHoursTest {
+  private static final LocalTime TIME_0600AM = LocalTime.of(6, 0);
+  private static final LocalTime TIME_0900AM = LocalTime.of(9, 0);
+  private static final LocalTime TIME_0500PM = LocalTime.of(17, 0);
+  private static final LocalTime TIME_1000PM = LocalTime.of(22, 0);
+
+  private static final int DURATION_1_DAY = 24 * 60;
+
+  private static final List<DayOfWeek> WEEKDAYS =
+      Arrays.asList(
+          DayOfWeek.MONDAY,
+          DayOfWeek.TUESDAY,
+          DayOfWeek.WEDNESDAY,
+          DayOfWeek.THURSDAY,
+          DayOfWeek.FRIDAY);
+
+  @Test
+  public void offHoursCoverNightsAndTheWeekend() {
+    WorkingHours hours = new WorkingHours(ZoneOffset.UTC, TIME_0900AM, TIME_0500PM, WEEKDAYS);
+    // Monday 2020-01-06 to Monday 2020-01-13.
+    EpochRange week = EpochRange.fromStartDuration(minute("2020-01-06T00:00:00Z"), 7 * 24 * 60);
+
+    List<EpochRange> actual = toList(hours.getOffHours(week));
+    List<EpochRange> expected =
+        Arrays.asList(
+            range("2020-01-06T00:00:00Z", "2020-01-06T09:00:00Z"),
+            range("2020-01-06T17:00:00Z", "2020-01-07T09:00:00Z"),
+            range("2020-01-07T17:00:00Z", "2020-01-08T09:00:00Z"),
+            range("2020-01-08T17:00:00Z", "2020-01-09T09:00:00Z"),
+            range("2020-01-09T17:00:00Z", "2020-01-10T09:00:00Z"),
+            range("2020-01-10T17:00:00Z", "2020-01-13T00:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void overnightShiftReachesIntoTheNextDay() {
+    WorkingHours hours =
+        new WorkingHours(ZoneOffset.UTC, TIME_1000PM, TIME_0600AM, Arrays.asList(DayOfWeek.MONDAY));
+    // Tuesday 2020-01-07, which only has the end of Monday's shift.
+    EpochRange day = EpochRange.fromStartDuration(minute("2020-01-07T00:00:00Z"), DURATION_1_DAY);
+
+    List<EpochRange> actual = toList(hours.getOffHours(day));
+    List<EpochRange> expected =
+        Arrays.asList(range("2020-01-07T06:00:00Z", "2020-01-08T00:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void hoursFollowDaylightSavingTime() {
+    // New York switches to daylight saving time on Sunday 2020-03-08.
+    WorkingHours hours =
+        new WorkingHours(
+            ZoneId.of("America/New_York"),
+            TIME_0900AM,
+            TIME_0500PM,
+            EnumSet.allOf(DayOfWeek.class));
+    EpochRange days =
+        EpochRange.fromStartDuration(minute("2020-03-07T12:00:00Z"), 2 * DURATION_1_DAY);
+
+    List<EpochRange> actual = toList(hours.getOffHours(days));
+    List<EpochRange> expected =
+        Arrays.asList(
+            range("2020-03-07T12:00:00Z", "2020-03-07T14:00:00Z"),
+            range("2020-03-07T22:00:00Z", "2020-03-08T13:00:00Z"),
+            range("2020-03-08T21:00:00Z", "2020-03-09T12:00:00Z"));
+
+    Assert.assertEquals(expected, actual);
+  }
+
+  @Test
+  public void noWorkingDaysMeansAlwaysOff() {
+    WorkingHours hours =
+        new WorkingHours(ZoneOffset.UTC, TIME_0900AM, TIME_0500PM, new ArrayList<>());
+    EpochRange day = EpochRange.fromStartDuration(minute("2020-01-06T00:00:00Z"), DURATION_1_DAY);
+
+    Assert.assertEquals(Arrays.asList(day), toList(hours.getOffHours(day)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyShiftIsRejected() {
+    new WorkingHours(ZoneOffset.UTC, TIME_0900AM, TIME_0900AM, WEEKDAYS);
+  }
+
+  private static long minute(String instant) {
+    return EpochRange.toEpochMinute(Instant.parse(instant));
+  }
+
+  private static EpochRange range(String start, String end) {
+    return EpochRange.fromInstants(Instant.parse(start), Instant.parse(end));
+  }
+
+  private static List<EpochRange> toList(Iterator<EpochRange> ranges) {
+    List<EpochRange> list = new ArrayList<>();
+    ranges.forEachRemaining(list::add);
+    return list;
+  }
+}